@@ -0,0 +1,15 @@
+-- 停留记录：上报链路实时检测或按历史时间段重算，查询时按设备、开始时间范围读取
+CREATE TABLE IF NOT EXISTS dwell_record
+(
+    id               BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '停留记录ID',
+    device_id        VARCHAR(64)    NOT NULL COMMENT '设备ID',
+    start_time       DATETIME(3)    NOT NULL COMMENT '开始时间',
+    end_time         DATETIME(3)    NOT NULL COMMENT '结束时间',
+    duration_seconds INT            NOT NULL COMMENT '持续时间（秒）',
+    latitude         DECIMAL(10, 7) NOT NULL COMMENT '质心纬度',
+    longitude        DECIMAL(10, 7) NOT NULL COMMENT '质心经度',
+    point_count      INT            NOT NULL COMMENT '轨迹点数',
+    mall_area_id     BIGINT         NULL COMMENT '所在商场区域ID',
+    create_time      DATETIME       NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    INDEX idx_device_start_time (device_id, start_time)
+) COMMENT '停留记录表';
@@ -0,0 +1,8 @@
+-- 历史轨迹按设备、记录时间查询及游标分页 (create_time, id) 使用的联合索引
+-- 游标条件 create_time > ? OR (create_time = ? AND id > ?) 在该索引上是一次范围扫描，翻到多深都只读一页的行
+ALTER TABLE location_data
+    ADD INDEX idx_device_create_time_id (device_id, create_time, id);
+
+-- 冷数据归档按天扫描、删除时使用
+ALTER TABLE location_data
+    ADD INDEX idx_create_time (create_time);
@@ -0,0 +1,9 @@
+-- 开启 location.partition.enabled 后，location_data 只作为月表的建表模板（CREATE TABLE ... LIKE，索引一并复制）
+-- 应用启动时自动创建当月和下月的 location_data_yyyyMM，并整表删除超出 retention-months 的月表
+-- 开启前需把已有数据按记录时间迁移到对应月表，例如：
+CREATE TABLE IF NOT EXISTS location_data_202503 LIKE location_data;
+INSERT INTO location_data_202503
+SELECT * FROM location_data
+WHERE create_time >= '2025-03-01' AND create_time < '2025-04-01';
+-- 所有月份迁移完成后清空原表
+-- TRUNCATE TABLE location_data;
@@ -0,0 +1,522 @@
+package com.project.mapapp.config;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 位置上报链路配置
+ *
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "location")
+public class LocationProperties {
+
+    /**
+     * 异步批量落库（write-behind）
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * 静止点抑制
+     */
+    private MotionFilter motionFilter = new MotionFilter();
+
+    /**
+     * 单设备上报限流
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 重复/重放上报过滤
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     * 上报处理方式
+     */
+    private Ingest ingest = new Ingest();
+
+    /**
+     * 分阶段处理流水线
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    /**
+     * 乱序/迟到定位点处理
+     */
+    private Reorder reorder = new Reorder();
+
+    /**
+     * 设备最新位置缓存
+     */
+    private LatestStore latestStore = new LatestStore();
+
+    /**
+     * 设备在线状态
+     */
+    private Presence presence = new Presence();
+
+    /**
+     * 历史轨迹查询
+     */
+    private History history = new History();
+
+    /**
+     * 位置表按月分表
+     */
+    private Partition partition = new Partition();
+
+    /**
+     * 历史轨迹冷数据归档
+     */
+    private Archive archive = new Archive();
+
+    /**
+     * 历史轨迹存储
+     */
+    private Store store = new Store();
+
+    /**
+     * 停留点检测
+     */
+    private Dwell dwell = new Dwell();
+
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * 是否开启，关闭时在请求线程内同步写库
+         */
+        private boolean enabled = false;
+
+        /**
+         * 内存队列容量
+         */
+        private int capacity = 20000;
+
+        /**
+         * 单次批量写入的最大行数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 定时刷盘间隔（毫秒）
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * 队列满时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        /**
+         * BLOCK 策略下最长等待时间（毫秒），超时则拒绝本次上报
+         */
+        private long blockTimeoutMs = 1000;
+
+        /**
+         * 溢出/写库失败时的本地落盘目录
+         */
+        private String spillDir = "data/location-spill";
+    }
+
+    @Data
+    public static class MotionThreshold {
+
+        /**
+         * 与上一个保留点的最小位移（米），小于该值视为未移动
+         */
+        private double minDistanceMeters = 10;
+
+        /**
+         * 位移阈值至少为 精度 * 该系数，避免把定位漂移当成移动
+         */
+        private double accuracyFactor = 1.0;
+
+        /**
+         * 静止期间的心跳间隔（毫秒），超过该间隔即使未移动也保留一个点
+         */
+        private long heartbeatMs = 60000;
+    }
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class MotionFilter extends MotionThreshold {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 按设备类型（DeviceTypeEnum 的 value）覆盖默认阈值
+         */
+        private Map<String, MotionThreshold> deviceTypes = new HashMap<>();
+    }
+
+    @Data
+    public static class RateLimit {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 令牌桶存放位置：LOCAL 单机内存 / REDIS 多节点共享
+         */
+        private StateStore mode = StateStore.LOCAL;
+
+        /**
+         * 每台设备每秒补充的令牌数
+         */
+        private double permitsPerSecond = 1.0;
+
+        /**
+         * 桶容量，允许的瞬时突发条数
+         */
+        private int burst = 5;
+
+        /**
+         * 被限流的上报合并后重新提交的检查间隔（毫秒）
+         */
+        private long drainIntervalMs = 200;
+    }
+
+    @Data
+    public static class Dedup {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = false;
+
+        /**
+         * 高水位存放位置：LOCAL 单机内存 / REDIS 多节点共享
+         */
+        private StateStore mode = StateStore.LOCAL;
+
+        /**
+         * 滑动窗口大小（位），高水位以下窗口内的序号允许乱序到达，窗口外的视为重放
+         */
+        private int window = 1024;
+
+        /**
+         * 未携带序号时按客户端定位时间去重，时间按该粒度（毫秒）取整后作为序号；0 表示只按序号去重
+         * 同一粒度内的两个真实定位点会被当作重复丢弃，落后高水位超过 window 个粒度的补传点也会被丢弃，只适合定位间隔固定的设备
+         */
+        private long timestampResolutionMs = 0;
+
+        /**
+         * 序号比高水位落后超过该值时视为设备重启、序号归零，重新开始计数
+         */
+        private long resetGap = 100000;
+
+        /**
+         * REDIS 模式下高水位的过期时间（秒）
+         */
+        private long redisTtlSeconds = 86400;
+    }
+
+    @Data
+    public static class Ingest {
+
+        /**
+         * SYNC 请求线程内处理 / MQ 投递到 location_queue 后立即返回，由消费者批量处理
+         */
+        private IngestMode mode = IngestMode.SYNC;
+
+        /**
+         * 每个消费者的预取条数
+         */
+        private int prefetch = 500;
+
+        /**
+         * 消费者初始并发数
+         */
+        private int concurrency = 2;
+
+        /**
+         * 消费者最大并发数
+         */
+        private int maxConcurrency = 8;
+
+        /**
+         * 单次批量处理的最大条数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 凑批的最长等待时间（毫秒），不足一批时到时即处理
+         */
+        private long batchTimeoutMs = 200;
+    }
+
+    @Data
+    public static class Pipeline {
+
+        /**
+         * 是否开启，关闭时在调用线程内依次落库、校验围栏、推送
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每个工作线程的环形队列容量
+         */
+        private int ringSize = 4096;
+
+        /**
+         * 路由阶段线程数
+         */
+        private int routeWorkers = 1;
+
+        /**
+         * 落库阶段线程数
+         */
+        private int persistWorkers = 2;
+
+        /**
+         * 围栏校验阶段线程数
+         */
+        private int fenceWorkers = 2;
+
+        /**
+         * 推送阶段线程数
+         */
+        private int fanoutWorkers = 2;
+
+        /**
+         * 落库阶段单次批量写入的最大行数
+         */
+        private int persistBatchSize = 500;
+
+        /**
+         * 入口队列满时请求线程的最长等待时间（毫秒），超时则拒绝本次上报
+         */
+        private long offerTimeoutMs = 1000;
+    }
+
+    @Data
+    public static class Reorder {
+
+        /**
+         * 是否开启，开启后比已推送的点更旧的定位点只写历史，不推送、不校验围栏
+         */
+        private boolean enabled = true;
+
+        /**
+         * 设备定位时间允许超前服务端时间的最大值（毫秒），超过则视为设备时钟错误，改用服务端时间
+         */
+        private long maxFutureSkewMs = 60000;
+    }
+
+    @Data
+    public static class LatestStore {
+
+        /**
+         * LOCAL 只缓存在本机内存 / REDIS 同时写入 Redis 哈希，多节点共享
+         */
+        private StateStore mode = StateStore.LOCAL;
+    }
+
+    @Data
+    public static class Presence {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled = true;
+
+        /**
+         * 超过该时间（毫秒）没有任何上报或上行活动即判定离线
+         */
+        private long timeoutMs = 120000;
+
+        /**
+         * 时间轮刻度（毫秒），离线判定最多延迟一个刻度
+         */
+        private long tickMs = 1000;
+    }
+
+    @Data
+    public static class History {
+
+        /**
+         * 抽稀结果缓存的条目数（只缓存结束时间已过去的区间）
+         */
+        private int simplifyCacheSize = 256;
+
+        /**
+         * 是否开启按（设备, 自然日）的历史轨迹缓存
+         */
+        private boolean dayCacheEnabled = true;
+
+        /**
+         * 日缓存最多保留的点数，超出后淘汰最久未访问的日期
+         */
+        private int dayCacheMaxPoints = 1000000;
+
+        /**
+         * 查询跨度超过该天数时不经过日缓存，直接读存储
+         */
+        private int dayCacheMaxDays = 7;
+
+        /**
+         * 未结束日期（今天）的日缓存有效期（秒），过期后重新加载
+         * 本节点的上报会实时追加到缓存，但 MQ 多消费者或多实例部署时其他节点写入的点不会，只能靠过期刷新；
+         * 只有单节点写入时才可设为 0（不过期）
+         */
+        private int dayCacheTodayTtlSeconds = 10;
+    }
+
+    @Data
+    public static class Partition {
+
+        /**
+         * 是否开启，开启后 location_data 只作为建表模板，数据写入 location_data_yyyyMM
+         */
+        private boolean enabled = false;
+
+        /**
+         * 保留最近几个月（含当月）的分表，更早的整表删除；小于等于 0 表示不删除
+         */
+        private int retentionMonths = 12;
+    }
+
+    @Data
+    public static class Archive {
+
+        /**
+         * 是否开启，开启后超过 hotDays 的整天数据按设备压缩写入本地段文件
+         */
+        private boolean enabled = false;
+
+        /**
+         * 段文件目录
+         */
+        private String dir = "location-archive";
+
+        /**
+         * 数据库中保留最近几天（含今天）的数据，更早的整天归档
+         */
+        private int hotDays = 7;
+
+        /**
+         * 归档检查间隔（分钟）
+         */
+        private long intervalMinutes = 60;
+
+        /**
+         * 归档后是否从数据库删除对应数据（按 ID 删除已写入段文件的行），不删除时查询仍全部走数据库
+         */
+        private boolean purge = true;
+
+        /**
+         * 删除时每条 DELETE 最多删除的行数
+         */
+        private int purgeBatchSize = 5000;
+    }
+
+    @Data
+    public static class Store {
+
+        /**
+         * 存储实现，MYSQL 为 location_data 表，MMAP 为按设备的内存映射定长记录文件
+         */
+        private StoreType type = StoreType.MYSQL;
+
+        /**
+         * MMAP 模式的文件目录
+         */
+        private String dir = "trajectory-log";
+
+        /**
+         * MMAP 模式文件每次扩容的记录数
+         */
+        private int growRecords = 16384;
+
+        /**
+         * MMAP 模式稀疏时间索引的间隔（每多少条记录一个索引项）
+         */
+        private int indexInterval = 128;
+
+        /**
+         * MMAP 模式脏页刷盘间隔（毫秒）
+         */
+        private long forceIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Dwell {
+
+        /**
+         * 是否在上报链路上实时检测停留，开启前需执行 sql/dwell_record.sql 建表
+         */
+        private boolean enabled = false;
+
+        /**
+         * 点距离停留质心不超过该值（米）时视为仍在原地
+         */
+        private double distanceMeters = 30;
+
+        /**
+         * 持续时间不少于该值（秒）才记为一次停留
+         */
+        private long minDurationSeconds = 300;
+
+        /**
+         * 相邻两点间隔超过该值（秒）时结束当前停留，设备离线期间不算停留
+         */
+        private long maxGapSeconds = 1800;
+
+        /**
+         * 商场区域多边形的缓存时间（秒）
+         */
+        private long areaRefreshSeconds = 300;
+    }
+
+    public enum StoreType {
+        MYSQL,
+        MMAP
+    }
+
+    public enum IngestMode {
+        SYNC,
+        MQ
+    }
+
+    /**
+     * 运行时状态的存放位置
+     */
+    public enum StateStore {
+        /**
+         * 单机内存
+         */
+        LOCAL,
+        /**
+         * Redis，多节点共享
+         */
+        REDIS
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * 阻塞等待队列空位
+         */
+        BLOCK,
+        /**
+         * 丢弃最旧的未落库数据
+         */
+        DROP_OLDEST,
+        /**
+         * 溢出部分写入本地文件，稍后补录
+         */
+        SPILL
+    }
+}
@@ -1,12 +1,19 @@
 package com.project.mapapp.config;
 
 import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.DynamicTableNameInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.project.mapapp.manager.LocationPartitionRouter;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.sql.Connection;
+
 /**
  * MyBatis Plus 配置
  *
@@ -21,10 +28,35 @@ public class MyBatisPlusConfig {
      * @return
      */
     @Bean
-    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+    public MybatisPlusInterceptor mybatisPlusInterceptor(LocationProperties locationProperties) {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        // 位置表按月分表的动态表名插件，需在分页插件之前
+        if (locationProperties.getPartition().isEnabled()) {
+            interceptor.addInnerInterceptor(new LocationTableNameInnerInterceptor());
+        }
         // 分页插件
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 游标查询不经过 beforeQuery，默认的动态表名插件对它不生效，这里在 prepare 阶段补上
+     */
+    private static class LocationTableNameInnerInterceptor extends DynamicTableNameInnerInterceptor {
+
+        LocationTableNameInnerInterceptor() {
+            setTableNameHandler((sql, tableName) -> LocationPartitionRouter.resolveTableName(tableName));
+        }
+
+        @Override
+        public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+            super.beforePrepare(sh, connection, transactionTimeout);
+            PluginUtils.MPStatementHandler mpSh = PluginUtils.mpStatementHandler(sh);
+            if (mpSh.mappedStatement().getSqlCommandType() == SqlCommandType.SELECT
+                    && LocationPartitionRouter.isRouting()) {
+                PluginUtils.MPBoundSql mpBs = mpSh.mPBoundSql();
+                mpBs.sql(changeTable(mpBs.sql()));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.project.mapapp.config.RabbitMQ;
+
+
+import com.project.mapapp.model.dto.location.LocationMessage;
+import com.project.mapapp.service.LocationDataService;
+import com.rabbitmq.client.Channel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 异步上报模式下的位置消费者，location.ingest.mode=MQ 时启用
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "location.ingest", name = "mode", havingValue = "MQ")
+public class LocationConsumer {
+
+    @Autowired
+    private LocationDataService locationDataService;
+
+    private final SimpleMessageConverter messageConverter = new SimpleMessageConverter();
+
+    public LocationConsumer() {
+        messageConverter.addAllowedListPatterns(LocationMessage.class.getName());
+    }
+
+    @RabbitListener(queues = "location_queue", containerFactory = "locationListenerContainerFactory")
+    public void receiveLocations(List<Message> messages, Channel channel) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long lastDeliveryTag = messages.get(messages.size() - 1).getMessageProperties().getDeliveryTag();
+        try {
+            List<LocationMessage> locations = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                LocationMessage location = convert(message);
+                if (location != null) {
+                    locations.add(location);
+                }
+            }
+
+            int inserted = locationDataService.processLocationMessages(locations);
+            log.debug("批量处理位置消息 - 条数: {}, 写入: {}", messages.size(), inserted);
+
+            // 手动确认整批消息
+            channel.basicAck(lastDeliveryTag, true);
+
+        } catch (Exception e) {
+            // 整批已回滚，逐条重试，只有本身处理失败的消息才重回队列或进入死信队列
+            log.error("批量处理位置消息失败，逐条重试 - 条数: {}", messages.size(), e);
+            for (Message message : messages) {
+                processOne(message, channel);
+            }
+        }
+    }
+
+    /**
+     * 单条处理并确认；首次失败重回队列，重投后仍失败则进入死信队列
+     */
+    private void processOne(Message message, Channel channel) throws IOException {
+        long deliveryTag = message.getMessageProperties().getDeliveryTag();
+        boolean redelivered = Boolean.TRUE.equals(message.getMessageProperties().getRedelivered());
+        try {
+            LocationMessage location = convert(message);
+            if (location != null) {
+                locationDataService.processLocationMessages(Collections.singletonList(location));
+            }
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            log.error("处理位置消息失败 - 重投: {}, {}", redelivered, message.getMessageProperties(), e);
+            channel.basicNack(deliveryTag, false, !redelivered);
+        }
+    }
+
+    private LocationMessage convert(Message message) {
+        Object body = messageConverter.fromMessage(message);
+        if (body instanceof LocationMessage) {
+            return (LocationMessage) body;
+        }
+        log.warn("忽略无法识别的位置消息: {}", message.getMessageProperties());
+        return null;
+    }
+}
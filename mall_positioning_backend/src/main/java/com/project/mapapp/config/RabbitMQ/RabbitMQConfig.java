@@ -1,6 +1,10 @@
 package com.project.mapapp.config.RabbitMQ;
 
+import com.project.mapapp.config.LocationProperties;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -66,4 +70,63 @@ public class RabbitMQConfig {
                 .to(applyExchange())
                 .with("apply_retry_routing_key");
     }
+
+    // 位置上报队列配置
+    @Bean
+    public Queue locationQueue() {
+        return QueueBuilder.durable("location_queue")
+                .withArgument("x-dead-letter-exchange", "dlx.location_exchange")
+                .withArgument("x-dead-letter-routing-key", "dlx.location_routing_key")
+                .build();
+    }
+
+    @Bean
+    public DirectExchange locationExchange() {
+        return new DirectExchange("location_exchange", true, false);
+    }
+
+    @Bean
+    public Binding locationBinding() {
+        return BindingBuilder.bind(locationQueue())
+                .to(locationExchange())
+                .with("location_routing_key");
+    }
+
+    @Bean
+    public Queue dlxLocationQueue() {
+        return QueueBuilder.durable("dlx.location_queue")
+                .withArgument("x-queue-mode", "lazy")
+                .build();
+    }
+
+    @Bean
+    public DirectExchange dlxLocationExchange() {
+        return new DirectExchange("dlx.location_exchange", true, false);
+    }
+
+    @Bean
+    public Binding dlxLocationBinding() {
+        return BindingBuilder.bind(dlxLocationQueue())
+                .to(dlxLocationExchange())
+                .with("dlx.location_routing_key");
+    }
+
+    // 位置消费者使用批量监听，direct 容器不支持攒批，单独配置 simple 容器
+    @Bean
+    @ConditionalOnProperty(prefix = "location.ingest", name = "mode", havingValue = "MQ")
+    public SimpleRabbitListenerContainerFactory locationListenerContainerFactory(
+            ConnectionFactory connectionFactory, LocationProperties locationProperties) {
+        LocationProperties.Ingest ingest = locationProperties.getIngest();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(ingest.getPrefetch());
+        factory.setConcurrentConsumers(ingest.getConcurrency());
+        factory.setMaxConcurrentConsumers(ingest.getMaxConcurrency());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(ingest.getBatchSize());
+        factory.setReceiveTimeout(ingest.getBatchTimeoutMs());
+        return factory;
+    }
 }
@@ -6,6 +6,7 @@ import com.project.mapapp.common.BaseResponse;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.common.ResultUtils;
 import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DeviceRoutingTable;
 import com.project.mapapp.mapper.DeviceMapper;
 import com.project.mapapp.mapper.GeoFenceMapper;
 import com.project.mapapp.model.dto.alert.AlertBatchUpdateDTO;
@@ -15,27 +16,47 @@ import com.project.mapapp.model.entity.GeoFence;
 import com.project.mapapp.model.enums.AlertLevel;
 import com.project.mapapp.model.enums.AlertStatus;
 import com.project.mapapp.model.enums.AlertType;
+import com.project.mapapp.model.enums.ExportFormat;
 import com.project.mapapp.model.vo.AlertDetailVO;
 import com.project.mapapp.model.vo.AlertVO;
 import com.project.mapapp.service.AlertService;
+import com.project.mapapp.service.UserService;
+import com.project.mapapp.utils.ExportWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/alerts")
 @Slf4j
 public class AlertController {
 
+    /**
+     * 单次导出最长的时间跨度（天）
+     */
+    private static final int EXPORT_MAX_DAYS = 31;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     @Autowired
     private AlertService alertService;
     @Autowired
+    private UserService userService;
+    @Autowired
+    private DeviceRoutingTable deviceRoutingTable;
+    @Autowired
     private DeviceMapper deviceMapper;
     @Autowired
     private GeoFenceMapper geoFenceMapper;
@@ -51,6 +72,60 @@ public class AlertController {
             @RequestParam(defaultValue = "1") Integer current,
             @RequestParam(defaultValue = "10") Integer pageSize) {
 
+        QueryWrapper<Alert> queryWrapper = buildQuery(deviceId, type, level, status, startTime, endTime);
+        Page<Alert> page = alertService.page(new Page<>(current, pageSize), queryWrapper);
+        return ResultUtils.success((Page<AlertVO>) page.convert(this::convertToVO));
+    }
+
+    /**
+     * 按列表相同的条件导出警报（xlsx 或 csv），服务端逐行写出
+     * 只导出当前监护人已绑定设备的警报，时间范围必填且不超过 EXPORT_MAX_DAYS 天
+     */
+    @GetMapping("/export")
+    public void exportAlerts(
+            @RequestParam(required = false) String deviceId,
+            @RequestParam(required = false) AlertType type,
+            @RequestParam(required = false) AlertLevel level,
+            @RequestParam(required = false) AlertStatus status,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(defaultValue = "XLSX") ExportFormat format,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        checkExportRange(startTime, endTime);
+        Set<String> boundDeviceIds = deviceRoutingTable.getDeviceIds(userService.getLoginUser(request).getId());
+        if (boundDeviceIds.isEmpty()) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "没有已绑定的设备");
+        }
+        if (StringUtils.isNotBlank(deviceId) && !boundDeviceIds.contains(deviceId)) {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权导出未绑定设备的警报");
+        }
+        QueryWrapper<Alert> queryWrapper = buildQuery(deviceId, type, level, status, startTime, endTime);
+        queryWrapper.in("device_id", boundDeviceIds);
+        ExportWriter.prepareResponse(response, "alerts", format);
+        long count = alertService.exportAlerts(queryWrapper, format, response.getOutputStream());
+        log.info("导出警报 - 条数: {}", count);
+    }
+
+    private void checkExportRange(String startTime, String endTime) {
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            start = LocalDateTime.parse(startTime, TIME_FORMATTER);
+            end = LocalDateTime.parse(endTime, TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "时间格式不正确，应为 yyyy-MM-dd HH:mm:ss");
+        }
+        if (start.isAfter(end)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "开始时间不能晚于结束时间");
+        }
+        if (start.plusDays(EXPORT_MAX_DAYS).isBefore(end)) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "导出时间跨度不能超过" + EXPORT_MAX_DAYS + "天");
+        }
+    }
+
+    private QueryWrapper<Alert> buildQuery(String deviceId, AlertType type, AlertLevel level, AlertStatus status,
+                                           String startTime, String endTime) {
         QueryWrapper<Alert> queryWrapper = new QueryWrapper<>();
         if (StringUtils.isNotBlank(deviceId)) {
             queryWrapper.eq("device_id", deviceId);
@@ -71,9 +146,7 @@ public class AlertController {
             queryWrapper.le("triggered_at", endTime);
         }
         queryWrapper.orderByDesc("triggered_at");
-
-        Page<Alert> page = alertService.page(new Page<>(current, pageSize), queryWrapper);
-        return ResultUtils.success((Page<AlertVO>) page.convert(this::convertToVO));
+        return queryWrapper;
     }
 
     @GetMapping("/{id}")
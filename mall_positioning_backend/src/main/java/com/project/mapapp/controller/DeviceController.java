@@ -9,6 +9,8 @@ import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.common.ResultUtils;
 import com.project.mapapp.constant.UserConstant;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DevicePresenceTracker;
+import com.project.mapapp.manager.DeviceRoutingTable;
 import com.project.mapapp.mapper.ApplicationMapper;
 import com.project.mapapp.mapper.DeviceMapper;
 import com.project.mapapp.mapper.UserMapper;
@@ -22,6 +24,7 @@ import com.project.mapapp.model.entity.Device;
 import com.project.mapapp.model.entity.User;
 import com.project.mapapp.model.entity.Ward;
 import com.project.mapapp.model.enums.ApplicationStatus;
+import com.project.mapapp.model.vo.DevicePresenceVO;
 import com.project.mapapp.service.DeviceService;
 import com.project.mapapp.service.UserService;
 import com.project.mapapp.utils.JwtTokenUtil;
@@ -54,6 +57,10 @@ public class DeviceController {
     private WardMapper wardMapper;
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
+    @Autowired
+    private DeviceRoutingTable deviceRoutingTable;
+    @Autowired
+    private DevicePresenceTracker devicePresenceTracker;
 
     /**
      * 获取所有设备
@@ -190,6 +197,23 @@ public class DeviceController {
         return ResultUtils.success(device);
     }
 
+    /**
+     * 批量查询设备在线状态，只返回当前监护人已绑定的设备
+     * @param deviceIds 为空时返回全部已绑定设备
+     * @param request
+     * @return
+     */
+    @GetMapping("/presence")
+    public BaseResponse<List<DevicePresenceVO>> listDevicePresence(
+            @RequestParam(required = false) List<String> deviceIds, HttpServletRequest request) {
+        User loginUser = userService.getLoginUser(request);
+        Set<String> boundDeviceIds = deviceRoutingTable.getDeviceIds(loginUser.getId());
+        List<String> queryIds = deviceIds == null || deviceIds.isEmpty()
+                ? new ArrayList<>(boundDeviceIds)
+                : deviceIds.stream().filter(boundDeviceIds::contains).collect(Collectors.toList());
+        return ResultUtils.success(devicePresenceTracker.getPresence(queryIds));
+    }
+
     @GetMapping("/getMySelfDeviceInfo")
     public BaseResponse<DeviceInfo> getMySelfDeviceInfo(int id,HttpServletRequest request) {
         QueryWrapper<Device> queryWrapper = new QueryWrapper<>();
@@ -1,32 +1,56 @@
 package com.project.mapapp.controller;
 
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.project.mapapp.annotation.AuthCheck;
 import com.project.mapapp.common.BaseResponse;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.common.ResultUtils;
-import com.project.mapapp.mapper.ApplicationMapper;
-import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.constant.UserConstant;
+import com.project.mapapp.manager.DevicePresenceTracker;
+import com.project.mapapp.manager.DeviceRoutingTable;
+import com.project.mapapp.manager.LocationMotionFilter;
+import com.project.mapapp.manager.LocationOrderGuard;
+import com.project.mapapp.manager.LocationPipeline;
+import com.project.mapapp.manager.LocationReplayFilter;
+import com.project.mapapp.manager.LocationReportCoalescer;
+import com.project.mapapp.manager.LocationWriteBuffer;
+import com.project.mapapp.model.dto.location.LocationBatchReportDTO;
 import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
-import com.project.mapapp.model.entity.Application;
-import com.project.mapapp.model.entity.Device;
 import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.enums.ExportFormat;
+import com.project.mapapp.model.vo.DwellRecordVO;
+import com.project.mapapp.model.vo.EncodedTrajectoryVO;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.LocationIngestStatsVO;
+import com.project.mapapp.model.vo.WardLocationVO;
+import com.project.mapapp.service.DwellRecordService;
 import com.project.mapapp.service.LocationDataService;
 import com.project.mapapp.service.UserService;
-import com.project.mapapp.service.WebSocketService;
+import com.project.mapapp.utils.ExportWriter;
+import com.project.mapapp.utils.TrajectoryBuffer;
+import com.project.mapapp.utils.TrajectoryCodec;
+import com.project.mapapp.utils.TrajectorySimplifier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -36,48 +60,135 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LocationDataController {
 
+    /**
+     * 历史轨迹分页单页最大条数
+     */
+    private static final int HISTORY_PAGE_MAX_SIZE = 2000;
+
+    /**
+     * 单次导出最多的设备数
+     */
+    private static final int EXPORT_MAX_DEVICES = 200;
+
+    /**
+     * 单次导出最长的时间跨度（天）
+     */
+    private static final int EXPORT_MAX_DAYS = 31;
+
     private final LocationDataService locationService;
     private final UserService userService;
-    private final WebSocketService webSocketService;
-    private final DeviceMapper deviceMapper;
-    private final ApplicationMapper applicationMapper;
+    private final DeviceRoutingTable deviceRoutingTable;
+    private final LocationReportCoalescer locationReportCoalescer;
+    private final LocationWriteBuffer locationWriteBuffer;
+    private final LocationMotionFilter locationMotionFilter;
+    private final LocationReplayFilter locationReplayFilter;
+    private final LocationProperties locationProperties;
+    private final LocationPipeline locationPipeline;
+    private final LocationOrderGuard locationOrderGuard;
+    private final DevicePresenceTracker devicePresenceTracker;
     private final LocationDataService locationDataTestService;
+    private final DwellRecordService dwellRecordService;
 
     /**
      * 上报当前位置
      */
     @PostMapping("/report")
-    public BaseResponse<String> reportLocation(@RequestBody LocationReportDTO dto) {
+    public BaseResponse<String> reportLocation(@RequestBody @Valid LocationReportDTO dto) {
         log.info("收到位置上报: {}", dto);
-        QueryWrapper<Device> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("user_id",dto.getWardId());
-        String deviceId = deviceMapper.selectOne(queryWrapper).getId();
-        dto.setDeviceId(deviceId);
+        dto.setDeviceId(getWardDeviceId(dto.getWardId()));
+        dto.setGuardianId(getGuardianId(dto.getDeviceId()));
+        devicePresenceTracker.touch(dto.getDeviceId());
 
-        QueryWrapper<Application> applicationQueryWrapper = new QueryWrapper<>();
-        applicationQueryWrapper.eq("ward_device_id",deviceId);
-        Long guardianId = Long.valueOf(applicationMapper.selectOne(applicationQueryWrapper).getGuardian_id());
-        dto.setGuardianId(guardianId);
+        // 网络超时重试带来的重复上报直接丢弃
+        if (locationReplayFilter.isDuplicate(dto.getDeviceId(), dto)) {
+            return ResultUtils.success("重复上报，已忽略");
+        }
 
+        // 单设备限流：超出速率的上报合并为最新一条，稍后处理
+        if (!locationReportCoalescer.admit(dto)) {
+            return ResultUtils.success("上报过于频繁，已合并");
+        }
 
-        boolean success = locationService.processLocation(
-                dto.getDeviceId(),
-                dto.getLatitude(),
-                dto.getLongitude(),
-                dto.getAccuracy(),
-                dto.getGuardianId()
-        );
+        // 异步模式下投递到消息队列后立即返回
+        boolean mq = locationProperties.getIngest().getMode() == LocationProperties.IngestMode.MQ;
+        boolean success = false;
+        try {
+            success = locationService.ingestLocation(dto);
+        } finally {
+            // 处理或投递失败时撤销去重标记，设备重试同一序号时不会被当作重复忽略
+            if (!success) {
+                locationReplayFilter.forget(dto.getDeviceId(), dto);
+            }
+        }
 
         if (success) {
-            // 主动触发一次推送测试
-            LocationResponseDTO locationResponseDTO = new LocationResponseDTO();
-            BeanUtils.copyProperties(dto, locationResponseDTO);
-            webSocketService.notifyGuardian(dto.getGuardianId(), locationResponseDTO);
-            return ResultUtils.success("上报成功");
+            return ResultUtils.success(mq ? "上报已受理" : "上报成功");
         }
         return ResultUtils.error(ErrorCode.OPERATION_ERROR);
     }
 
+    /**
+     * 批量上报位置（设备重连后补传缓存的定位点）
+     */
+    @PostMapping("/report/batch")
+    public BaseResponse<Integer> reportLocationBatch(@RequestBody @Valid LocationBatchReportDTO dto) {
+        log.info("收到批量位置上报: wardId={}, 数量={}", dto.getWardId(), dto.getLocations().size());
+        String deviceId = getWardDeviceId(dto.getWardId());
+        Long guardianId = getGuardianId(deviceId);
+        devicePresenceTracker.touch(deviceId);
+
+        List<LocationReportDTO> locations = locationReplayFilter.filter(deviceId, dto.getLocations());
+        int count;
+        try {
+            count = locationService.ingestLocationBatch(deviceId, guardianId, locations);
+        } catch (RuntimeException e) {
+            locationReplayFilter.forget(deviceId, locations);
+            throw e;
+        }
+        return ResultUtils.success(count);
+    }
+
+    /**
+     * 当前监护人所有被监护人的设备信息和最新位置（首页一次请求）
+     */
+    @GetMapping("/wards/latest")
+    public BaseResponse<List<WardLocationVO>> listWardLatestLocations(HttpServletRequest request) {
+        Long guardianId = userService.getLoginUser(request).getId();
+        return ResultUtils.success(locationService.listWardLatestLocations(guardianId));
+    }
+
+    /**
+     * 上报链路运行指标
+     */
+    @GetMapping("/ingest/stats")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<LocationIngestStatsVO> getIngestStats() {
+        LocationIngestStatsVO stats = new LocationIngestStatsVO();
+        stats.setWriteBufferPending(locationWriteBuffer.pendingCount());
+        stats.setWriteBufferDropped(locationWriteBuffer.getDroppedCount());
+        stats.setWriteBufferSpilled(locationWriteBuffer.getSpilledCount());
+        stats.setDuplicates(locationReplayFilter.getDuplicateCount());
+        stats.setLateFixes(locationOrderGuard.getLateCount());
+        stats.setMotionSuppressed(locationMotionFilter.getSuppressedCount());
+        stats.setRateLimited(locationReportCoalescer.getLimitedCount());
+        stats.setRateLimitShed(locationReportCoalescer.getShedCount());
+        stats.setRateLimitPending(locationReportCoalescer.pendingCount());
+        stats.setPipelineStages(locationPipeline.getStats());
+        return ResultUtils.success(stats);
+    }
+
+    private String getWardDeviceId(Long wardId) {
+        String deviceId = deviceRoutingTable.getDeviceId(wardId);
+        ThrowUtils.throwIf(deviceId == null, ErrorCode.NOT_FOUND_ERROR, "被监护人未绑定设备");
+        return deviceId;
+    }
+
+    private Long getGuardianId(String deviceId) {
+        Long guardianId = deviceRoutingTable.getPrimaryGuardianId(deviceId);
+        ThrowUtils.throwIf(guardianId == null, ErrorCode.NOT_FOUND_ERROR, "设备未绑定监护人");
+        return guardianId;
+    }
+
     /**
      * 获取最新位置
      */
@@ -95,39 +206,174 @@ public class LocationDataController {
             @RequestParam String deviceId,
             @RequestParam(required = false) String startTime,
             @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer zoom,
             HttpServletRequest request) {
 
         // 3. 转换时间参数
-        LocalDateTime start = null;
-        LocalDateTime end = null;
-        try {
-            if (startTime != null) {
-                start = LocalDateTime.parse(startTime, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            }
-            if (endTime != null) {
-                end = LocalDateTime.parse(endTime, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            }
-        } catch (DateTimeParseException e) {
-            return ResultUtils.error(ErrorCode.PARAMS_ERROR, "时间格式不正确");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+
+        // 指定容差（米）或地图缩放级别时返回抽稀后的轨迹
+        if (zoom != null || tolerance != null) {
+            checkSimplifyParams(tolerance, zoom);
+            return ResultUtils.success(locationDataTestService.querySimplifiedHistory(deviceId, start, end, tolerance, zoom));
         }
 
-        // 4. 查询数据库
+        // 4. 查询数据库（已按时间升序）
         List<LocationData> locations = locationDataTestService.queryHistory(deviceId, start, end);
 
         // 5. 转换为DTO
         List<LocationResponseDTO> dtos = locations.stream()
-                .sorted(Comparator.comparing(LocationData::getCreate_time)) // 按时间排序
-                .map(loc -> {
-                    LocationResponseDTO dto = new LocationResponseDTO();
-                    dto.setDeviceId(loc.getDevice_id());
-                    dto.setLongitude(loc.getLongitude());
-                    dto.setLatitude(loc.getLatitude());
-                    dto.setAccuracy(loc.getAccuracy());
-                    dto.setCreateTime(loc.getCreate_time().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-                    return dto;
-                })
+                .map(LocationResponseDTO::from)
                 .collect(Collectors.toList());
 
         return ResultUtils.success(dtos);
     }
-}
\ No newline at end of file
+
+    /**
+     * 历史轨迹的 polyline 编码版本（format=polyline），可同时指定 tolerance/zoom 抽稀
+     */
+    @GetMapping(value = "/history", params = "format=polyline")
+    public BaseResponse<EncodedTrajectoryVO> getLocationHistoryPolyline(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer zoom) {
+        TrajectoryBuffer trajectory = queryTrajectory(deviceId, startTime, endTime, tolerance, zoom);
+        EncodedTrajectoryVO vo = new EncodedTrajectoryVO();
+        vo.setDeviceId(deviceId);
+        vo.setCount(trajectory.size());
+        vo.setPrecision(TrajectoryCodec.POLYLINE_PRECISION);
+        vo.setPoints(TrajectoryCodec.encodePolyline(trajectory));
+        return ResultUtils.success(vo);
+    }
+
+    /**
+     * 历史轨迹的二进制帧版本（format=binary），帧格式见 TrajectoryCodec
+     */
+    @GetMapping(value = "/history", params = "format=binary")
+    public ResponseEntity<byte[]> getLocationHistoryBinary(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer zoom) {
+        TrajectoryBuffer trajectory = queryTrajectory(deviceId, startTime, endTime, tolerance, zoom);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(TrajectoryCodec.BINARY_MEDIA_TYPE))
+                .body(TrajectoryCodec.encodeBinary(trajectory));
+    }
+
+    /**
+     * 游标分页查询历史轨迹，首页不传 cursor，之后传上一页返回的 nextCursor
+     */
+    @GetMapping("/history/page")
+    public BaseResponse<LocationHistoryPageVO> getLocationHistoryPage(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") Integer pageSize) {
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > HISTORY_PAGE_MAX_SIZE, ErrorCode.PARAMS_ERROR, "分页大小不正确");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+        return ResultUtils.success(locationDataTestService.queryHistoryPage(deviceId, start, end, cursor, pageSize));
+    }
+
+    /**
+     * 流式导出历史轨迹（NDJSON，每行一个位置），适合大时间范围，服务端内存占用恒定
+     */
+    @GetMapping(value = "/history/stream", produces = "application/x-ndjson")
+    public void streamLocationHistory(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            HttpServletResponse response) throws IOException {
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        int count = locationDataTestService.streamHistory(deviceId, start, end, response.getOutputStream());
+        log.info("流式导出历史轨迹 - deviceId: {}, 条数: {}", deviceId, count);
+    }
+
+    /**
+     * 导出多台设备的历史轨迹（xlsx 或 csv），deviceIds 以逗号分隔，只能导出当前监护人已绑定的设备，
+     * 时间范围必填且不超过 EXPORT_MAX_DAYS 天，服务端逐行写出
+     */
+    @GetMapping("/export")
+    public void exportLocationHistory(
+            @RequestParam List<String> deviceIds,
+            @RequestParam String startTime,
+            @RequestParam String endTime,
+            @RequestParam(defaultValue = "XLSX") ExportFormat format,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        List<String> devices = deviceIds.stream().filter(id -> !id.isEmpty()).distinct().collect(Collectors.toList());
+        ThrowUtils.throwIf(devices.isEmpty() || devices.size() > EXPORT_MAX_DEVICES, ErrorCode.PARAMS_ERROR, "设备数量不正确");
+        Set<String> boundDeviceIds = deviceRoutingTable.getDeviceIds(userService.getLoginUser(request).getId());
+        ThrowUtils.throwIf(!boundDeviceIds.containsAll(devices), ErrorCode.NO_AUTH_ERROR, "无权导出未绑定设备的轨迹");
+        LocalDateTime start = parseTime(startTime);
+        LocalDateTime end = parseTime(endTime);
+        checkExportRange(start, end);
+
+        ExportWriter.prepareResponse(response, "location-history", format);
+        long count = locationDataTestService.exportHistory(devices, start, end, format, response.getOutputStream());
+        log.info("导出历史轨迹 - 设备数: {}, 条数: {}", devices.size(), count);
+    }
+
+    /**
+     * 查询时间段内的停留记录（起止时间、质心、所在区域），包括仍在进行中的停留
+     */
+    @GetMapping("/dwells")
+    public BaseResponse<List<DwellRecordVO>> listDwellRecords(
+            @RequestParam String deviceId,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime) {
+        return ResultUtils.success(dwellRecordService.listDwellRecords(deviceId, parseTime(startTime), parseTime(endTime)));
+    }
+
+    /**
+     * 按历史轨迹重新检测时间段内的停留（如调整阈值或补录数据后），只能重算今天之前的时间段
+     */
+    @PostMapping("/dwells/recompute")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<List<DwellRecordVO>> recomputeDwellRecords(
+            @RequestParam String deviceId,
+            @RequestParam String startTime,
+            @RequestParam String endTime) {
+        return ResultUtils.success(dwellRecordService.recompute(deviceId, parseTime(startTime), parseTime(endTime)));
+    }
+
+    private TrajectoryBuffer queryTrajectory(String deviceId, String startTime, String endTime,
+                                             Double tolerance, Integer zoom) {
+        checkSimplifyParams(tolerance, zoom);
+        return locationDataTestService.queryTrajectory(deviceId, parseTime(startTime), parseTime(endTime), tolerance, zoom);
+    }
+
+    private void checkExportRange(LocalDateTime start, LocalDateTime end) {
+        ThrowUtils.throwIf(start.isAfter(end), ErrorCode.PARAMS_ERROR, "开始时间不能晚于结束时间");
+        ThrowUtils.throwIf(start.plusDays(EXPORT_MAX_DAYS).isBefore(end), ErrorCode.PARAMS_ERROR,
+                "导出时间跨度不能超过" + EXPORT_MAX_DAYS + "天");
+    }
+
+    private void checkSimplifyParams(Double tolerance, Integer zoom) {
+        ThrowUtils.throwIf(zoom != null && (zoom < TrajectorySimplifier.MIN_ZOOM || zoom > TrajectorySimplifier.MAX_ZOOM),
+                ErrorCode.PARAMS_ERROR, "缩放级别不正确");
+        ThrowUtils.throwIf(zoom == null && tolerance != null && tolerance <= 0, ErrorCode.PARAMS_ERROR, "抽稀容差必须大于0");
+    }
+
+    private LocalDateTime parseTime(String time) {
+        if (time == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(time, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        } catch (DateTimeParseException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "时间格式不正确");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.enums.PresenceStatus;
+import com.project.mapapp.model.vo.DevicePresenceVO;
+import com.project.mapapp.service.WebSocketService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 设备在线状态：上报和 WebSocket 上行活动刷新最后活跃时间，超时由时间轮驱动判定离线，
+ * 上线/离线时推送给设备的所有监护人
+ * 每台设备在时间轮中最多只有一个槽位，到期时若期间有过活动则顺延到新的到期槽位，
+ * 因此每个刻度只处理恰好到期的设备，不需要逐台轮询
+ *
+ */
+@Slf4j
+@Component
+public class DevicePresenceTracker {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LocationProperties.Presence config;
+    private final DeviceRoutingTable deviceRoutingTable;
+    private final WebSocketService webSocketService;
+
+    private final ConcurrentMap<String, Presence> presences = new ConcurrentHashMap<>();
+    private final Queue<String>[] wheel;
+    private final long tickMs;
+    private final long timeoutMs;
+    private volatile long cursor;
+
+    private ScheduledExecutorService ticker;
+
+    @SuppressWarnings("unchecked")
+    public DevicePresenceTracker(LocationProperties locationProperties,
+                                 DeviceRoutingTable deviceRoutingTable,
+                                 WebSocketService webSocketService) {
+        this.config = locationProperties.getPresence();
+        this.deviceRoutingTable = deviceRoutingTable;
+        this.webSocketService = webSocketService;
+        this.tickMs = Math.max(1, config.getTickMs());
+        this.timeoutMs = config.getTimeoutMs();
+        // 到期时间最多比当前刻度晚 timeout，时间轮转一圈即可覆盖，不需要记录圈数
+        int size = (int) (timeoutMs / tickMs) + 2;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        cursor = System.currentTimeMillis() / tickMs;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tickSafely, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("设备在线状态跟踪已开启 - 超时: {}ms, 刻度: {}ms, 槽位: {}", timeoutMs, tickMs, wheel.length);
+    }
+
+    /**
+     * 记录设备活动，离线设备转为在线
+     */
+    public void touch(String deviceId) {
+        if (!config.isEnabled() || deviceId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Presence presence = presences.computeIfAbsent(deviceId, k -> new Presence());
+        presence.lastSeen = now;
+        boolean cameOnline = false;
+        synchronized (presence) {
+            if (!presence.online) {
+                presence.online = true;
+                cameOnline = true;
+            }
+        }
+        if (presence.scheduled.compareAndSet(false, true)) {
+            schedule(deviceId, now + timeoutMs);
+        }
+        if (cameOnline) {
+            publish(deviceId, presence, PresenceStatus.ONLINE);
+        }
+    }
+
+    /**
+     * 批量查询在线状态，未跟踪到的设备视为离线
+     */
+    public List<DevicePresenceVO> getPresence(Collection<String> deviceIds) {
+        List<DevicePresenceVO> result = new ArrayList<>(deviceIds.size());
+        for (String deviceId : deviceIds) {
+            result.add(getPresence(deviceId));
+        }
+        return result;
+    }
+
+    public DevicePresenceVO getPresence(String deviceId) {
+        Presence presence = presences.get(deviceId);
+        if (presence == null) {
+            return new DevicePresenceVO(deviceId, PresenceStatus.OFFLINE, null);
+        }
+        return toVO(deviceId, presence, presence.online ? PresenceStatus.ONLINE : PresenceStatus.OFFLINE);
+    }
+
+    private void schedule(String deviceId, long deadline) {
+        long tick = deadline / tickMs + 1;
+        long current = cursor;
+        if (tick <= current) {
+            tick = current + 1;
+        }
+        wheel[(int) (tick % wheel.length)].add(deviceId);
+    }
+
+    private void tickSafely() {
+        try {
+            long target = System.currentTimeMillis() / tickMs;
+            while (cursor < target) {
+                long next = cursor + 1;
+                cursor = next;
+                expire(wheel[(int) (next % wheel.length)]);
+            }
+        } catch (Exception e) {
+            log.error("设备在线状态检查失败", e);
+        }
+    }
+
+    private void expire(Queue<String> slot) {
+        long now = System.currentTimeMillis();
+        String deviceId;
+        while ((deviceId = slot.poll()) != null) {
+            Presence presence = presences.get(deviceId);
+            if (presence == null) {
+                continue;
+            }
+            long deadline = presence.lastSeen + timeoutMs;
+            if (deadline > now) {
+                // 期间有过活动，顺延到新的到期槽位
+                schedule(deviceId, deadline);
+                continue;
+            }
+            presence.scheduled.set(false);
+            boolean wentOffline = false;
+            synchronized (presence) {
+                if (presence.online && presence.lastSeen + timeoutMs <= now) {
+                    presence.online = false;
+                    wentOffline = true;
+                }
+            }
+            if (wentOffline) {
+                publish(deviceId, presence, PresenceStatus.OFFLINE);
+            } else if (presence.online && presence.scheduled.compareAndSet(false, true)) {
+                // 复查时设备刚好又有活动
+                schedule(deviceId, presence.lastSeen + timeoutMs);
+            }
+        }
+    }
+
+    private void publish(String deviceId, Presence presence, PresenceStatus status) {
+        log.info("设备{} - deviceId: {}", status.getText(), deviceId);
+        try {
+            webSocketService.pushPresence(deviceRoutingTable.getGuardianIds(deviceId), toVO(deviceId, presence, status));
+        } catch (Exception e) {
+            log.error("推送设备在线状态失败 - deviceId: {}", deviceId, e);
+        }
+    }
+
+    private static DevicePresenceVO toVO(String deviceId, Presence presence, PresenceStatus status) {
+        String lastSeen = LocalDateTime.ofInstant(Instant.ofEpochMilli(presence.lastSeen), ZoneId.systemDefault())
+                .format(TIME_FORMATTER);
+        return new DevicePresenceVO(deviceId, status, lastSeen);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private static class Presence {
+        private volatile long lastSeen;
+        private volatile boolean online;
+        /**
+         * 是否已在时间轮中，保证每台设备最多占一个槽位
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,103 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单设备令牌桶
+ * 每台设备只保存一个“理论到达时间”(GCRA)，取令牌即一次 CAS，不加锁
+ *
+ */
+@Slf4j
+@Component
+public class DeviceRateLimiter {
+
+    private static final String REDIS_KEY_PREFIX = "location:rate:";
+
+    /**
+     * 与本地实现相同的算法，时间取 Redis 服务器时间（微秒），保证多节点共用一个桶
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME') " +
+            "local now = tonumber(t[1]) * 1000000 + tonumber(t[2]) " +
+            "local tat = tonumber(redis.call('GET', KEYS[1])) " +
+            "if tat == nil or tat < now then tat = now end " +
+            "if tat - now > tonumber(ARGV[2]) then return 0 end " +
+            "tat = tat + tonumber(ARGV[1]) " +
+            "redis.call('SET', KEYS[1], string.format('%d', tat), 'PX', math.ceil((tat - now) / 1000) + 1) " +
+            "return 1",
+            Long.class);
+
+    private final LocationProperties.RateLimit config;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final long toleranceNanos;
+
+    public DeviceRateLimiter(LocationProperties locationProperties, StringRedisTemplate stringRedisTemplate) {
+        this.config = locationProperties.getRateLimit();
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / config.getPermitsPerSecond());
+        this.toleranceNanos = intervalNanos * Math.max(config.getBurst() - 1, 0);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 尝试为设备取一个令牌
+     */
+    public boolean tryAcquire(String deviceId) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        if (config.getMode() == LocationProperties.StateStore.REDIS) {
+            try {
+                Long allowed = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+                        Collections.singletonList(REDIS_KEY_PREFIX + deviceId),
+                        String.valueOf(TimeUnit.NANOSECONDS.toMicros(intervalNanos)),
+                        String.valueOf(TimeUnit.NANOSECONDS.toMicros(toleranceNanos)));
+                return allowed != null && allowed == 1L;
+            } catch (Exception e) {
+                // Redis 不可用时退化为本地限流，不阻断上报
+                log.warn("Redis 限流不可用，退化为本地限流 - deviceId: {}", deviceId, e);
+            }
+        }
+        return tryAcquireLocal(deviceId);
+    }
+
+    private boolean tryAcquireLocal(String deviceId) {
+        AtomicLong tat = buckets.computeIfAbsent(deviceId, k -> new AtomicLong(System.nanoTime()));
+        while (true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long base = current - now < 0 ? now : current;
+            if (base - now > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 清理令牌已补满的桶，避免长期离线的设备占用内存
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - now < 0);
+    }
+}
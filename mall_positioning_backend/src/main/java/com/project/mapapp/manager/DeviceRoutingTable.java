@@ -0,0 +1,298 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.project.mapapp.mapper.ApplicationMapper;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.model.entity.Application;
+import com.project.mapapp.model.entity.Device;
+import com.project.mapapp.model.enums.ApplicationStatus;
+import com.project.mapapp.model.enums.DeviceTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 设备路由表：被监护人ID -> 设备ID -> 已通过申请的监护人ID，以及监护人ID -> 设备ID 的反向索引，同时缓存设备类型
+ * 启动时全量加载，绑定/审批/设备更新时增量维护，上报链路不再查库
+ *
+ */
+@Slf4j
+@Component
+public class DeviceRoutingTable {
+
+    /**
+     * 未命中记录的容量和有效期（毫秒）
+     */
+    private static final int MISS_CACHE_SIZE = 10000;
+    private static final long MISS_CACHE_TTL_MS = 30000;
+
+    private final DeviceMapper deviceMapper;
+    private final ApplicationMapper applicationMapper;
+
+    private final ConcurrentMap<Long, String> wardDevices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentSkipListSet<Long>> deviceGuardians = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ConcurrentSkipListSet<String>> guardianDevices = new ConcurrentHashMap<>();
+    /**
+     * 设备ID -> 设备类型，类型未知的设备存空串，避免反复回源
+     */
+    private final ConcurrentMap<String, String> deviceTypes = new ConcurrentHashMap<>();
+    /**
+     * 回源后仍未找到的设备ID（没有已通过申请的监护人 / 设备不存在），多为调用方传入的无效ID，
+     * 不放入上面的路由表，只在容量和有效期有限的 LRU 中短暂记录，避免反复回源，也不会无限增长
+     */
+    private final LRUCache<String, Boolean> guardianMisses = CacheUtil.newLRUCache(MISS_CACHE_SIZE, MISS_CACHE_TTL_MS);
+    private final LRUCache<String, Boolean> deviceMisses = CacheUtil.newLRUCache(MISS_CACHE_SIZE, MISS_CACHE_TTL_MS);
+
+    public DeviceRoutingTable(DeviceMapper deviceMapper, ApplicationMapper applicationMapper) {
+        this.deviceMapper = deviceMapper;
+        this.applicationMapper = applicationMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            QueryWrapper<Device> deviceQuery = new QueryWrapper<>();
+            deviceQuery.isNotNull("user_id");
+            for (Device device : deviceMapper.selectList(deviceQuery)) {
+                wardDevices.put(device.getUser_id(), device.getId());
+                deviceTypes.put(device.getId(), device.getType() == null ? "" : device.getType());
+            }
+
+            QueryWrapper<Application> applicationQuery = new QueryWrapper<>();
+            applicationQuery.eq("status", ApplicationStatus.APPROVED.getCode());
+            for (Application application : applicationMapper.selectList(applicationQuery)) {
+                String deviceId = application.getWard_device_id();
+                Long guardianId = Long.valueOf(application.getGuardian_id());
+                guardiansOf(deviceId).add(guardianId);
+                devicesOf(guardianId).add(deviceId);
+            }
+            log.info("设备路由表加载完成 - 设备数: {}, 监护关系数: {}", wardDevices.size(), deviceGuardians.size());
+        } catch (Exception e) {
+            // 启动时加载失败不影响服务，查询未命中时会回源数据库
+            log.error("设备路由表加载失败，将按需回源", e);
+        }
+    }
+
+    /**
+     * 获取被监护人绑定的设备ID，未命中时回源数据库
+     */
+    public String getDeviceId(Long wardId) {
+        if (wardId == null) {
+            return null;
+        }
+        String deviceId = wardDevices.get(wardId);
+        if (deviceId != null) {
+            return deviceId;
+        }
+        QueryWrapper<Device> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("user_id", wardId).last("LIMIT 1");
+        Device device = deviceMapper.selectOne(queryWrapper);
+        if (device == null) {
+            return null;
+        }
+        wardDevices.put(wardId, device.getId());
+        return device.getId();
+    }
+
+    /**
+     * 获取设备所有已通过申请的监护人ID，未命中时回源数据库
+     */
+    public Set<Long> getGuardianIds(String deviceId) {
+        if (deviceId == null) {
+            return Collections.emptySet();
+        }
+        ConcurrentSkipListSet<Long> guardians = deviceGuardians.get(deviceId);
+        if (guardians != null) {
+            return Collections.unmodifiableSet(guardians);
+        }
+        return Collections.unmodifiableSet(loadGuardians(deviceId));
+    }
+
+    /**
+     * 主监护人（ID最小的已通过申请的监护人），用于写入 location_data.guardian_id
+     */
+    public Long getPrimaryGuardianId(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        ConcurrentSkipListSet<Long> guardians = deviceGuardians.get(deviceId);
+        if (guardians == null) {
+            guardians = loadGuardians(deviceId);
+        }
+        return guardians.isEmpty() ? null : guardians.first();
+    }
+
+    /**
+     * 获取监护人已通过申请的所有设备ID，未命中时回源数据库
+     */
+    public Set<String> getDeviceIds(Long guardianId) {
+        if (guardianId == null) {
+            return Collections.emptySet();
+        }
+        ConcurrentSkipListSet<String> devices = guardianDevices.get(guardianId);
+        if (devices != null) {
+            return Collections.unmodifiableSet(devices);
+        }
+        QueryWrapper<Application> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("guardian_id", guardianId)
+                .eq("status", ApplicationStatus.APPROVED.getCode());
+        devices = devicesOf(guardianId);
+        // 只补反向索引，设备侧的监护人集合仍按需完整加载
+        for (Application application : applicationMapper.selectList(queryWrapper)) {
+            devices.add(application.getWard_device_id());
+        }
+        return Collections.unmodifiableSet(devices);
+    }
+
+    /**
+     * 获取设备类型，未知时返回 null
+     */
+    public DeviceTypeEnum getDeviceType(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        String type = deviceTypes.get(deviceId);
+        if (type == null) {
+            if (deviceMisses.get(deviceId, false) != null) {
+                return null;
+            }
+            Device device = deviceMapper.selectById(deviceId);
+            if (device == null) {
+                deviceMisses.put(deviceId, Boolean.TRUE);
+                return null;
+            }
+            type = device.getType() == null ? "" : device.getType();
+            deviceTypes.put(deviceId, type);
+        }
+        return DeviceTypeEnum.getEnumByValue(type);
+    }
+
+    /**
+     * 设备绑定到被监护人
+     */
+    public void bindDevice(Long wardId, String deviceId) {
+        if (wardId == null || deviceId == null) {
+            return;
+        }
+        String previous = wardDevices.put(wardId, deviceId);
+        if (previous != null && !previous.equals(deviceId)) {
+            log.info("被监护人 {} 换绑设备: {} -> {}", wardId, previous, deviceId);
+        }
+    }
+
+    /**
+     * 申请审批结果变更
+     */
+    public void updateGuardian(String deviceId, Long guardianId, boolean approved) {
+        if (deviceId == null || guardianId == null) {
+            return;
+        }
+        if (approved) {
+            link(deviceId, guardianId);
+        } else {
+            unlink(deviceId, guardianId);
+        }
+    }
+
+    /**
+     * 设备信息变更后重新加载该设备的路由
+     */
+    public void refreshDevice(String deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        Device device = deviceMapper.selectById(deviceId);
+        wardDevices.values().removeIf(deviceId::equals);
+        if (device != null && device.getUser_id() != null) {
+            wardDevices.put(device.getUser_id(), deviceId);
+        }
+        deviceMisses.remove(deviceId);
+        guardianMisses.remove(deviceId);
+        if (device == null) {
+            deviceTypes.remove(deviceId);
+        } else {
+            deviceTypes.put(deviceId, device.getType() == null ? "" : device.getType());
+        }
+        ConcurrentSkipListSet<Long> previous = deviceGuardians.remove(deviceId);
+        if (previous != null) {
+            for (Long guardianId : previous) {
+                unlink(deviceId, guardianId);
+            }
+        }
+        loadGuardians(deviceId);
+    }
+
+    /**
+     * 从数据库加载设备的监护人；没有时不放入路由表，只记录到 guardianMisses
+     */
+    private ConcurrentSkipListSet<Long> loadGuardians(String deviceId) {
+        if (guardianMisses.get(deviceId, false) != null) {
+            return new ConcurrentSkipListSet<>();
+        }
+        QueryWrapper<Application> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("ward_device_id", deviceId)
+                .eq("status", ApplicationStatus.APPROVED.getCode());
+        List<Application> applications = applicationMapper.selectList(queryWrapper);
+        if (applications.isEmpty()) {
+            ConcurrentSkipListSet<Long> loaded = deviceGuardians.get(deviceId);
+            if (loaded != null) {
+                return loaded;
+            }
+            guardianMisses.put(deviceId, Boolean.TRUE);
+            return new ConcurrentSkipListSet<>();
+        }
+        ConcurrentSkipListSet<Long> guardians = guardiansOf(deviceId);
+        for (Application application : applications) {
+            Long guardianId = Long.valueOf(application.getGuardian_id());
+            guardians.add(guardianId);
+            ConcurrentSkipListSet<String> devices = guardianDevices.get(guardianId);
+            if (devices != null) {
+                devices.add(deviceId);
+            }
+        }
+        return guardians;
+    }
+
+    /**
+     * 只更新已加载的集合，未加载的一侧下次访问时从数据库完整加载
+     */
+    private void link(String deviceId, Long guardianId) {
+        guardianMisses.remove(deviceId);
+        ConcurrentSkipListSet<Long> guardians = deviceGuardians.get(deviceId);
+        if (guardians != null) {
+            guardians.add(guardianId);
+        }
+        ConcurrentSkipListSet<String> devices = guardianDevices.get(guardianId);
+        if (devices != null) {
+            devices.add(deviceId);
+        }
+    }
+
+    private void unlink(String deviceId, Long guardianId) {
+        ConcurrentSkipListSet<Long> guardians = deviceGuardians.get(deviceId);
+        if (guardians != null) {
+            guardians.remove(guardianId);
+        }
+        ConcurrentSkipListSet<String> devices = guardianDevices.get(guardianId);
+        if (devices != null) {
+            devices.remove(deviceId);
+        }
+    }
+
+    private ConcurrentSkipListSet<Long> guardiansOf(String deviceId) {
+        return deviceGuardians.computeIfAbsent(deviceId, k -> new ConcurrentSkipListSet<>());
+    }
+
+    private ConcurrentSkipListSet<String> devicesOf(Long guardianId) {
+        return guardianDevices.computeIfAbsent(guardianId, k -> new ConcurrentSkipListSet<>());
+    }
+}
@@ -0,0 +1,335 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 历史轨迹按（设备, 自然日）缓存：本节点上报链路写入成功后追加到已缓存的日期，补录的旧点使该日缓存失效；
+ * 其他节点写入的点追加不到，因此加载时日期尚未结束的缓存在 dayCacheTodayTtlSeconds 后过期重新加载。
+ * 按缓存的总点数做近似 LRU 淘汰；追加只锁对应日期的缓存，上报链路不在全局锁上排队
+ * 反复打开“今天”“昨天”的轨迹时不再访问存储；缓存中的点不带记录 ID
+ *
+ */
+@Component
+public class HistoryDayCache implements TrajectoryAppendListener {
+
+    private final LocationProperties.History config;
+    private final TrajectoryStore trajectoryStore;
+
+    /**
+     * 按键并发访问，追加和快照只锁对应的 DayBucket，不同设备、不同日期之间互不阻塞
+     */
+    private final ConcurrentMap<String, DayBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong cachedPoints = new AtomicLong();
+    /**
+     * 同一时间只有一个线程执行淘汰
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * 每台设备的追加计数，用于判断加载期间是否有新写入
+     */
+    private final ConcurrentMap<String, AtomicLong> appendCounts = new ConcurrentHashMap<>();
+
+    public HistoryDayCache(LocationProperties locationProperties, TrajectoryStore trajectoryStore) {
+        this.config = locationProperties.getHistory();
+        this.trajectoryStore = trajectoryStore;
+    }
+
+    /**
+     * 按记录时间顺序读取设备的轨迹，visitor 返回 false 时停止
+     * 不限起止时间或跨度超过 dayCacheMaxDays 的查询直接读存储
+     */
+    public void scan(String deviceId, LocalDateTime start, LocalDateTime end, Predicate<LocationData> visitor) {
+        if (!config.isDayCacheEnabled() || start == null || end == null
+                || ChronoUnit.DAYS.between(start.toLocalDate(), end.toLocalDate()) >= config.getDayCacheMaxDays()) {
+            trajectoryStore.scan(deviceId, start, end, visitor);
+            return;
+        }
+        long startMs = toMillis(start);
+        long endMs = toMillis(end);
+        LocalDate today = LocalDate.now();
+        LocalDate last = end.toLocalDate().isAfter(today) ? today : end.toLocalDate();
+        for (LocalDate day = start.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+            DayBucket bucket = bucket(deviceId, day);
+            for (int i = 0; i < bucket.size; i++) {
+                long time = bucket.createTimes[i];
+                if (time < startMs) {
+                    continue;
+                }
+                if (time > endMs || !visitor.test(bucket.toLocationData(deviceId, i))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 上报链路写入存储（事务已提交）后追加到已缓存的日期
+     * 先递增设备的追加计数再查找缓存：正在加载的日期要么在放入缓存后发现计数变化而放弃，要么已放入缓存并收到这次追加
+     */
+    @Override
+    public void onAppended(List<LocationPoint> points) {
+        if (!config.isDayCacheEnabled()) {
+            return;
+        }
+        boolean added = false;
+        for (LocationPoint point : points) {
+            appendCounts.computeIfAbsent(point.getDeviceId(), k -> new AtomicLong()).incrementAndGet();
+            String key = key(point.getDeviceId(), dayOf(point.getCreateTime()));
+            DayBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            synchronized (bucket) {
+                if (bucket.removed) {
+                    continue;
+                }
+                if (bucket.size == 0 || point.getCreateTime() >= bucket.createTimes[bucket.size - 1]) {
+                    bucket.add(point);
+                    cachedPoints.incrementAndGet();
+                    added = true;
+                    continue;
+                }
+            }
+            // 补录的旧数据打乱了顺序，丢弃这一天的缓存，下次重新加载
+            remove(key, bucket);
+        }
+        if (added) {
+            evict();
+        }
+    }
+
+    /**
+     * 取一天的数据快照，未缓存时从存储加载；加载期间该设备有新写入时不放入缓存，避免漏掉或重复
+     */
+    private DayBucket bucket(String deviceId, LocalDate day) {
+        String key = key(deviceId, day);
+        DayBucket cached = cached(key, day);
+        if (cached != null) {
+            return cached;
+        }
+        AtomicLong appendCount = appendCounts.computeIfAbsent(deviceId, k -> new AtomicLong());
+        long count = appendCount.get();
+        DayBucket loaded = new DayBucket();
+        loaded.loadedAt = System.currentTimeMillis();
+        loaded.accessedAt = loaded.loadedAt;
+        LocalDateTime from = day.atStartOfDay();
+        trajectoryStore.scan(deviceId, from, from.plusDays(1).minusNanos(1), location -> {
+            loaded.add(location);
+            return true;
+        });
+        if (appendCount.get() != count || loaded.size > config.getDayCacheMaxPoints()) {
+            return loaded.snapshot();
+        }
+        DayBucket existing = buckets.putIfAbsent(key, loaded);
+        if (existing != null) {
+            return snapshot(existing);
+        }
+        cachedPoints.addAndGet(loaded.size);
+        if (appendCount.get() != count) {
+            remove(key, loaded);
+            return loaded.snapshot();
+        }
+        evict();
+        return snapshot(loaded);
+    }
+
+    /**
+     * 取有效缓存的快照，加载时日期尚未结束且已超过有效期的缓存移除后返回 null
+     */
+    private DayBucket cached(String key, LocalDate day) {
+        DayBucket cached = buckets.get(key);
+        if (cached == null || config.getDayCacheTodayTtlSeconds() <= 0
+                || cached.loadedAt >= toMillis(day.plusDays(1).atStartOfDay())
+                || System.currentTimeMillis() - cached.loadedAt < config.getDayCacheTodayTtlSeconds() * 1000L) {
+            return cached == null ? null : snapshot(cached);
+        }
+        remove(key, cached);
+        return null;
+    }
+
+    private DayBucket snapshot(DayBucket bucket) {
+        synchronized (bucket) {
+            bucket.accessedAt = System.currentTimeMillis();
+            return bucket.snapshot();
+        }
+    }
+
+    private void remove(String key, DayBucket bucket) {
+        synchronized (bucket) {
+            if (bucket.removed) {
+                return;
+            }
+            bucket.removed = true;
+            cachedPoints.addAndGet(-bucket.size);
+        }
+        buckets.remove(key, bucket);
+    }
+
+    /**
+     * 超出 dayCacheMaxPoints 时按最近访问时间淘汰，一次淘汰到上限的 90%，避免每次追加都触发
+     */
+    private void evict() {
+        if (cachedPoints.get() <= config.getDayCacheMaxPoints() || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long target = config.getDayCacheMaxPoints() / 10 * 9;
+            // 访问时间在排序期间可能变化，先取值再排序
+            List<Map.Entry<Long, String>> entries = new ArrayList<>(buckets.size());
+            buckets.forEach((key, bucket) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(bucket.accessedAt, key)));
+            entries.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<Long, String> entry : entries) {
+                if (cachedPoints.get() <= target) {
+                    break;
+                }
+                DayBucket bucket = buckets.get(entry.getValue());
+                if (bucket != null) {
+                    remove(entry.getValue(), bucket);
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static String key(String deviceId, LocalDate day) {
+        return deviceId + "|" + day;
+    }
+
+    private static LocalDate dayOf(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 一台设备一天的点，按列存放；只在末尾追加，扩容时换新数组，
+     * 快照持有当时的数组和长度，之后的追加不影响快照
+     */
+    private static class DayBucket {
+
+        private long[] createTimes;
+        private double[] latitudes;
+        private double[] longitudes;
+        /**
+         * 精度（米），没有时为 NaN
+         */
+        private double[] accuracies;
+        /**
+         * 定位时间，0 表示无
+         */
+        private long[] timestamps;
+        /**
+         * 监护人ID，0 表示无
+         */
+        private long[] guardianIds;
+        private int size;
+        /**
+         * 从存储加载的时间，判断加载时该日期是否已结束
+         */
+        private long loadedAt;
+        /**
+         * 最近访问时间，用于淘汰
+         */
+        private volatile long accessedAt;
+        /**
+         * 已移出缓存，之后不再追加；在该对象锁内访问
+         */
+        private boolean removed;
+
+        DayBucket() {
+            this(64);
+        }
+
+        private DayBucket(int capacity) {
+            createTimes = new long[capacity];
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            accuracies = new double[capacity];
+            timestamps = new long[capacity];
+            guardianIds = new long[capacity];
+        }
+
+        void add(LocationData location) {
+            add(toMillis(location.getCreate_time()),
+                    location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(),
+                    location.getAccuracy() != null ? location.getAccuracy().doubleValue() : Double.NaN,
+                    location.getTimestamp() != null ? location.getTimestamp().getTime() : 0,
+                    location.getGuardian_id() != null ? location.getGuardian_id() : 0);
+        }
+
+        void add(LocationPoint point) {
+            add(point.getCreateTime(), point.getLatitude(), point.getLongitude(), point.getAccuracy(),
+                    point.getTimestamp(), point.getGuardianId() != null ? point.getGuardianId() : 0);
+        }
+
+        private void add(long createTime, double latitude, double longitude, double accuracy,
+                         long timestamp, long guardianId) {
+            if (size == createTimes.length) {
+                int capacity = size + (size >> 1);
+                createTimes = Arrays.copyOf(createTimes, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                accuracies = Arrays.copyOf(accuracies, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                guardianIds = Arrays.copyOf(guardianIds, capacity);
+            }
+            createTimes[size] = createTime;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            accuracies[size] = accuracy;
+            timestamps[size] = timestamp;
+            guardianIds[size] = guardianId;
+            size++;
+        }
+
+        DayBucket snapshot() {
+            DayBucket snapshot = new DayBucket(0);
+            snapshot.createTimes = createTimes;
+            snapshot.latitudes = latitudes;
+            snapshot.longitudes = longitudes;
+            snapshot.accuracies = accuracies;
+            snapshot.timestamps = timestamps;
+            snapshot.guardianIds = guardianIds;
+            snapshot.size = size;
+            return snapshot;
+        }
+
+        LocationData toLocationData(String deviceId, int i) {
+            LocationData location = new LocationData();
+            location.setDevice_id(deviceId);
+            location.setLatitude(BigDecimal.valueOf(latitudes[i]));
+            location.setLongitude(BigDecimal.valueOf(longitudes[i]));
+            location.setAccuracy(Double.isNaN(accuracies[i]) ? null : BigDecimal.valueOf(accuracies[i]));
+            location.setTimestamp(timestamps[i] > 0 ? new Date(timestamps[i]) : null);
+            location.setGuardian_id(guardianIds[i] != 0 ? guardianIds[i] : null);
+            location.setCreate_time(LocalDateTime.ofInstant(Instant.ofEpochMilli(createTimes[i]), ZoneId.systemDefault()));
+            return location;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 设备最新位置：由上报链路在点进入实时链路时更新，读请求直接命中内存，
+ * 只有冷启动后首次读取才回源历史轨迹存储；REDIS 模式下额外写一份到 Redis 哈希，多节点共享
+ *
+ */
+@Slf4j
+@Component
+public class LatestLocationStore {
+
+    private static final String REDIS_KEY = "location:latest";
+
+    private final LocationProperties.LatestStore config;
+    private final TrajectoryStore trajectoryStore;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ConcurrentMap<String, LocationPoint> latest = new ConcurrentHashMap<>();
+
+    public LatestLocationStore(LocationProperties locationProperties,
+                               TrajectoryStore trajectoryStore,
+                               StringRedisTemplate stringRedisTemplate) {
+        this.config = locationProperties.getLatestStore();
+        this.trajectoryStore = trajectoryStore;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 更新设备最新位置，只接受定位时间更新的点
+     */
+    public void update(LocationPoint point) {
+        LocationPoint merged = latest.merge(point.getDeviceId(), point,
+                (old, now) -> now.getTimestamp() >= old.getTimestamp() ? now : old);
+        if (merged != point || !isRedisMode()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForHash().put(REDIS_KEY, point.getDeviceId(), encode(point));
+        } catch (Exception e) {
+            log.warn("写入 Redis 最新位置失败 - deviceId: {}", point.getDeviceId(), e);
+        }
+    }
+
+    /**
+     * 获取设备最新位置，未命中时回源历史轨迹存储并缓存，设备从未上报时返回 null
+     */
+    public LocationPoint get(String deviceId) {
+        if (deviceId == null) {
+            return null;
+        }
+        if (isRedisMode()) {
+            LocationPoint point = getFromRedis(deviceId);
+            if (point != null) {
+                latest.merge(deviceId, point, (old, now) -> now.getTimestamp() >= old.getTimestamp() ? now : old);
+                return point;
+            }
+        }
+        LocationPoint point = latest.get(deviceId);
+        if (point != null) {
+            return point;
+        }
+        point = loadFromStore(deviceId);
+        if (point != null) {
+            update(point);
+        }
+        return point;
+    }
+
+    /**
+     * 批量获取，未上报过的设备不出现在结果中
+     */
+    public Map<String, LocationPoint> getAll(Collection<String> deviceIds) {
+        Map<String, LocationPoint> result = new HashMap<>(deviceIds.size() * 2);
+        List<String> misses = new ArrayList<>();
+        if (isRedisMode()) {
+            List<String> keys = new ArrayList<>(deviceIds);
+            try {
+                List<Object> values = stringRedisTemplate.opsForHash().multiGet(REDIS_KEY, new ArrayList<>(keys));
+                for (int i = 0; i < keys.size(); i++) {
+                    if (values.get(i) != null) {
+                        result.put(keys.get(i), decode(keys.get(i), (String) values.get(i)));
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("读取 Redis 最新位置失败，使用本地缓存", e);
+            }
+        }
+        for (String deviceId : deviceIds) {
+            if (result.containsKey(deviceId)) {
+                continue;
+            }
+            LocationPoint point = latest.get(deviceId);
+            if (point != null) {
+                result.put(deviceId, point);
+            } else {
+                misses.add(deviceId);
+            }
+        }
+        for (String deviceId : misses) {
+            LocationPoint point = loadFromStore(deviceId);
+            if (point != null) {
+                update(point);
+                result.put(deviceId, point);
+            }
+        }
+        return result;
+    }
+
+    private boolean isRedisMode() {
+        return config.getMode() == LocationProperties.StateStore.REDIS;
+    }
+
+    private LocationPoint getFromRedis(String deviceId) {
+        try {
+            Object value = stringRedisTemplate.opsForHash().get(REDIS_KEY, deviceId);
+            return value == null ? null : decode(deviceId, (String) value);
+        } catch (Exception e) {
+            log.warn("读取 Redis 最新位置失败 - deviceId: {}", deviceId, e);
+            return null;
+        }
+    }
+
+    private LocationPoint loadFromStore(String deviceId) {
+        LocationData location = trajectoryStore.latest(deviceId);
+        if (location == null) {
+            return null;
+        }
+        LocationPoint point = new LocationPoint();
+        point.setDeviceId(location.getDevice_id());
+        point.setGuardianId(location.getGuardian_id());
+        point.setLatitude(location.getLatitude().doubleValue());
+        point.setLongitude(location.getLongitude().doubleValue());
+        if (location.getAccuracy() != null) {
+            point.setAccuracy(location.getAccuracy().doubleValue());
+        }
+        long createTime = location.getCreate_time() == null ? 0
+                : location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        point.setCreateTime(createTime);
+        point.setTimestamp(location.getTimestamp() != null ? location.getTimestamp().getTime() : createTime);
+        return point;
+    }
+
+    /**
+     * Redis 中的值：纬度,经度,精度,定位时间,接收时间,主监护人ID
+     */
+    private static String encode(LocationPoint point) {
+        return point.getLatitude() + "," + point.getLongitude() + ","
+                + (point.hasAccuracy() ? String.valueOf(point.getAccuracy()) : "") + ","
+                + point.getTimestamp() + "," + point.getCreateTime() + ","
+                + (point.getGuardianId() == null ? "" : String.valueOf(point.getGuardianId()));
+    }
+
+    private static LocationPoint decode(String deviceId, String value) {
+        String[] fields = value.split(",", -1);
+        LocationPoint point = new LocationPoint();
+        point.setDeviceId(deviceId);
+        point.setLatitude(Double.parseDouble(fields[0]));
+        point.setLongitude(Double.parseDouble(fields[1]));
+        if (!fields[2].isEmpty()) {
+            point.setAccuracy(Double.parseDouble(fields[2]));
+        }
+        point.setTimestamp(Long.parseLong(fields[3]));
+        point.setCreateTime(Long.parseLong(fields[4]));
+        if (!fields[5].isEmpty()) {
+            point.setGuardianId(Long.parseLong(fields[5]));
+        }
+        return point;
+    }
+}
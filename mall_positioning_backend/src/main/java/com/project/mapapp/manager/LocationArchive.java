@@ -0,0 +1,663 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.utils.TrajectoryCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 历史轨迹冷数据归档：超过保留天数的整天数据按设备写入本地段文件，之后从数据库删除
+ * 每台设备一个只追加的段文件（.seg），每天一个压缩的列式数据块；另有定长的时间索引（.idx），
+ * 每项记录块的日期、首末时间、偏移和长度。读取时按索引定位块，通过内存映射读取
+ * 开启删除（purge）时 watermark 之前的日期全部在段文件中，之后的在数据库中，查询按 watermark 拆成冷、热两段；
+ * 数据库只按 ID 删除已写入段文件的行，归档后才写入的迟到数据（补传、溢写回放、消息积压）会合并进对应日期的块后再删除
+ * 不删除时数据库中的数据是完整的，查询不拆分
+ *
+ */
+@Slf4j
+@Component
+public class LocationArchive {
+
+    private static final String WATERMARK_FILE = "watermark";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * 索引项：日期(epochDay) 首点时间 末点时间 块偏移 块长度 点数
+     */
+    private static final int INDEX_ENTRY_BYTES = 40;
+
+    private static final Pattern SAFE_FILE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,100}");
+
+    private final LocationProperties.Archive config;
+    private final LocationDataMapper locationDataMapper;
+    private final LocationPartitionRouter locationPartitionRouter;
+    private final TransactionTemplate transactionTemplate;
+
+    private Path dir;
+
+    /**
+     * 该日期之前（不含）的数据都已归档，未开启或尚未归档时为空
+     */
+    private volatile LocalDate archivedUntil;
+
+    private ScheduledExecutorService archiver;
+
+    public LocationArchive(LocationProperties locationProperties,
+                           LocationDataMapper locationDataMapper,
+                           LocationPartitionRouter locationPartitionRouter,
+                           TransactionTemplate transactionTemplate) {
+        this.config = locationProperties.getArchive();
+        this.locationDataMapper = locationDataMapper;
+        this.locationPartitionRouter = locationPartitionRouter;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        dir = Paths.get(config.getDir());
+        Files.createDirectories(dir);
+        Path watermark = dir.resolve(WATERMARK_FILE);
+        if (Files.exists(watermark)) {
+            archivedUntil = LocalDate.parse(new String(Files.readAllBytes(watermark), StandardCharsets.UTF_8).trim());
+        }
+        archiver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        archiver.scheduleWithFixedDelay(this::archiveSafely, 1, Math.max(1, config.getIntervalMinutes()), TimeUnit.MINUTES);
+        log.info("位置冷数据归档已开启 - 目录: {}, 保留天数: {}, 已归档至: {}", dir.toAbsolutePath(), config.getHotDays(), archivedUntil);
+    }
+
+    /**
+     * 数据库部分的开始时间：范围起点早于 watermark 时从 watermark 开始
+     */
+    public LocalDateTime hotStart(LocalDateTime start) {
+        LocalDate until = readableUntil();
+        if (until == null || (start != null && !start.isBefore(until.atStartOfDay()))) {
+            return start;
+        }
+        return until.atStartOfDay();
+    }
+
+    /**
+     * 时间范围是否还有部分在数据库中
+     */
+    public boolean needsHot(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime hotStart = hotStart(start);
+        return end == null || hotStart == null || !end.isBefore(hotStart);
+    }
+
+    /**
+     * 按记录时间顺序读取已归档的轨迹，visitor 返回 false 时停止
+     */
+    public void scan(String deviceId, LocalDateTime start, LocalDateTime end, Predicate<LocationData> visitor) {
+        LocalDate until = readableUntil();
+        if (until == null || (start != null && !start.isBefore(until.atStartOfDay()))) {
+            return;
+        }
+        long startMs = start == null ? Long.MIN_VALUE : toMillis(start);
+        long endMs = Math.min(end == null ? Long.MAX_VALUE : toMillis(end), toMillis(until.atStartOfDay()) - 1);
+        try {
+            IndexEntry[] entries = readIndex(deviceId);
+            if (entries.length == 0) {
+                return;
+            }
+            // 索引先于段文件读取，索引中的块都已完整写入
+            try (FileChannel channel = FileChannel.open(segmentPath(deviceId), StandardOpenOption.READ)) {
+                for (IndexEntry entry : entries) {
+                    if (entry.day >= until.toEpochDay() || entry.lastTime < startMs || entry.firstTime > endMs) {
+                        continue;
+                    }
+                    Block block = Block.decode(readBlock(channel, entry));
+                    for (int i = 0; i < block.size; i++) {
+                        long time = block.createTimes[i];
+                        if (time < startMs) {
+                            continue;
+                        }
+                        if (time > endMs) {
+                            break;
+                        }
+                        if (!visitor.test(block.toLocationData(deviceId, i))) {
+                            return;
+                        }
+                    }
+                }
+            }
+        } catch (IOException | DataFormatException e) {
+            log.error("读取归档轨迹失败 - deviceId: {}", deviceId, e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取归档轨迹失败");
+        }
+    }
+
+    /**
+     * 设备最后一个已归档的点，没有时返回 null
+     */
+    public LocationData latest(String deviceId) {
+        if (readableUntil() == null) {
+            return null;
+        }
+        try {
+            IndexEntry[] entries = readIndex(deviceId);
+            if (entries.length == 0) {
+                return null;
+            }
+            IndexEntry last = entries[entries.length - 1];
+            try (FileChannel channel = FileChannel.open(segmentPath(deviceId), StandardOpenOption.READ)) {
+                Block block = Block.decode(readBlock(channel, last));
+                return block.toLocationData(deviceId, block.size - 1);
+            }
+        } catch (IOException | DataFormatException e) {
+            log.warn("读取归档最新位置失败 - deviceId: {}", deviceId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 查询从段文件读取的日期上界（不含），不删除数据库数据时为空
+     */
+    private LocalDate readableUntil() {
+        return config.isPurge() ? archivedUntil : null;
+    }
+
+    private void archiveSafely() {
+        try {
+            archiveDue();
+            if (config.isPurge() && archivedUntil != null) {
+                archiveLate(archivedUntil.atStartOfDay());
+            }
+        } catch (Exception e) {
+            log.error("位置冷数据归档失败", e);
+        }
+    }
+
+    /**
+     * 逐天归档到保留期之前，每归档完一天推进 watermark
+     */
+    private void archiveDue() throws IOException {
+        LocalDate target = LocalDate.now().minusDays(Math.max(1, config.getHotDays()) - 1);
+        LocalDate day = archivedUntil;
+        if (day == null) {
+            LocalDateTime earliest = earliestCreateTime();
+            if (earliest == null) {
+                return;
+            }
+            day = earliest.toLocalDate();
+        }
+        while (day.isBefore(target)) {
+            int devices = archiveDay(day);
+            LocalDate next = day.plusDays(1);
+            writeWatermark(next);
+            archivedUntil = next;
+            if (devices > 0) {
+                log.info("位置数据已归档 - 日期: {}, 设备数: {}", day, devices);
+            }
+            day = next;
+        }
+    }
+
+    private LocalDateTime earliestCreateTime() {
+        for (String table : locationPartitionRouter.tablesFor(null, null)) {
+            LocalDateTime earliest = locationPartitionRouter.withTable(table, locationDataMapper::selectMinCreateTime);
+            if (earliest != null) {
+                return earliest;
+            }
+        }
+        return null;
+    }
+
+    private int archiveDay(LocalDate day) throws IOException {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        Set<String> deviceIds = new TreeSet<>();
+        for (String table : locationPartitionRouter.tablesFor(from, from)) {
+            deviceIds.addAll(locationPartitionRouter.withTable(table,
+                    () -> locationDataMapper.listDeviceIdsBetween(from, to)));
+        }
+        for (String deviceId : deviceIds) {
+            IndexEntry[] entries = readIndex(deviceId);
+            if (entries.length > 0 && entries[entries.length - 1].day >= day.toEpochDay()) {
+                // 上次归档中途退出时已写入的设备
+                continue;
+            }
+            Block block = readDay(deviceId, from, to);
+            if (block.size > 0) {
+                append(deviceId, day, block);
+                purge(from, block);
+            }
+        }
+        return deviceIds.size();
+    }
+
+    /**
+     * 数据库中记录时间早于 watermark 的剩余数据：归档后才写入的迟到数据，或上次归档后未删除成功的数据
+     * 按设备和日期与已归档的块合并（按 ID 去重）后重写该日期的块，再从数据库删除
+     */
+    private void archiveLate(LocalDateTime until) throws IOException, DataFormatException {
+        LocalDateTime earliest = LocalDate.ofEpochDay(0).atStartOfDay();
+        for (String table : locationPartitionRouter.tablesFor(null, until)) {
+            List<String> deviceIds = locationPartitionRouter.withTable(table,
+                    () -> locationDataMapper.listDeviceIdsBetween(earliest, until));
+            for (String deviceId : deviceIds) {
+                List<LocalDate> days = locationPartitionRouter.withTable(table,
+                        () -> locationDataMapper.listDaysBetween(deviceId, earliest, until));
+                for (LocalDate day : days) {
+                    LocalDateTime from = day.atStartOfDay();
+                    Block rows = readDay(deviceId, from, from.plusDays(1));
+                    if (rows.size == 0) {
+                        continue;
+                    }
+                    Block merged = merge(deviceId, day, rows);
+                    if (merged != null) {
+                        append(deviceId, day, merged);
+                        log.info("迟到数据已归档 - deviceId: {}, 日期: {}, 合并后点数: {}", deviceId, day, merged.size);
+                    }
+                    purge(from, rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把数据库中的行合并进该日期已归档的块，按记录时间排序；没有新行时返回 null
+     */
+    private Block merge(String deviceId, LocalDate day, Block rows) throws IOException, DataFormatException {
+        IndexEntry archived = null;
+        for (IndexEntry entry : readIndex(deviceId)) {
+            if (entry.day == day.toEpochDay()) {
+                archived = entry;
+            }
+        }
+        if (archived == null) {
+            return rows;
+        }
+        Block existing;
+        try (FileChannel channel = FileChannel.open(segmentPath(deviceId), StandardOpenOption.READ)) {
+            existing = Block.decode(readBlock(channel, archived));
+        }
+        Set<Long> archivedIds = new HashSet<>();
+        List<LocationData> locations = new ArrayList<>(existing.size + rows.size);
+        for (int i = 0; i < existing.size; i++) {
+            archivedIds.add(existing.ids[i]);
+            locations.add(existing.toLocationData(deviceId, i));
+        }
+        for (int i = 0; i < rows.size; i++) {
+            if (!archivedIds.contains(rows.ids[i])) {
+                locations.add(rows.toLocationData(deviceId, i));
+            }
+        }
+        if (locations.size() == existing.size) {
+            return null;
+        }
+        locations.sort(Comparator.comparing(LocationData::getCreate_time)
+                .thenComparing(LocationData::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+        Block merged = new Block();
+        locations.forEach(merged::add);
+        return merged;
+    }
+
+    /**
+     * 读取设备在 [from, to) 内的数据库数据
+     */
+    private Block readDay(String deviceId, LocalDateTime from, LocalDateTime to) {
+        return transactionTemplate.execute(status -> {
+            Block rows = new Block();
+            for (String table : locationPartitionRouter.tablesFor(from, from)) {
+                try (Cursor<LocationData> cursor = locationPartitionRouter.withTable(table,
+                        () -> locationDataMapper.streamDeviceBetween(deviceId, from, to))) {
+                    for (LocationData location : cursor) {
+                        rows.add(location);
+                    }
+                } catch (IOException e) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取待归档轨迹失败");
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * 先写数据块并刷盘，再追加索引项，索引中出现的块一定是完整的
+     */
+    private void append(String deviceId, LocalDate day, Block block) throws IOException {
+        byte[] bytes = block.encode();
+        long offset;
+        try (FileChannel segment = FileChannel.open(segmentPath(deviceId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            offset = segment.size();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                segment.write(buffer, offset + buffer.position());
+            }
+            segment.force(false);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putLong(day.toEpochDay())
+                .putLong(block.createTimes[0])
+                .putLong(block.createTimes[block.size - 1])
+                .putLong(offset)
+                .putInt(bytes.length)
+                .putInt(block.size);
+        entry.flip();
+        try (FileChannel index = FileChannel.open(indexPath(deviceId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // 覆盖上次中途退出留下的不完整索引项
+            long position = index.size() / INDEX_ENTRY_BYTES * INDEX_ENTRY_BYTES;
+            while (entry.hasRemaining()) {
+                index.write(entry, position + entry.position());
+            }
+            index.force(false);
+        }
+    }
+
+    /**
+     * 按 ID 删除数据库中已写入段文件的行（块中的行都来自 day 所在的表），分批执行避免长事务
+     */
+    private void purge(LocalDateTime day, Block block) {
+        if (!config.isPurge()) {
+            return;
+        }
+        int batchSize = Math.max(1, config.getPurgeBatchSize());
+        List<Long> ids = new ArrayList<>(Math.min(block.size, batchSize));
+        for (String table : locationPartitionRouter.tablesFor(day, day)) {
+            for (int i = 0; i < block.size; i++) {
+                ids.add(block.ids[i]);
+                if (ids.size() == batchSize || i == block.size - 1) {
+                    locationPartitionRouter.withTable(table, () -> locationDataMapper.deleteBatchIds(ids));
+                    ids.clear();
+                }
+            }
+        }
+    }
+
+    private void writeWatermark(LocalDate until) throws IOException {
+        Path tmp = dir.resolve(WATERMARK_FILE + ".tmp");
+        Files.write(tmp, until.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, dir.resolve(WATERMARK_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取索引，按日期升序；合并迟到数据后同一天会有多个索引项，以最后追加的为准
+     */
+    private IndexEntry[] readIndex(String deviceId) throws IOException {
+        Path index = indexPath(deviceId);
+        if (!Files.exists(index)) {
+            return new IndexEntry[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(index));
+        TreeMap<Long, IndexEntry> entries = new TreeMap<>();
+        for (int i = buffer.capacity() / INDEX_ENTRY_BYTES; i > 0; i--) {
+            IndexEntry entry = new IndexEntry();
+            entry.day = buffer.getLong();
+            entry.firstTime = buffer.getLong();
+            entry.lastTime = buffer.getLong();
+            entry.offset = buffer.getLong();
+            entry.length = buffer.getInt();
+            entry.count = buffer.getInt();
+            entries.put(entry.day, entry);
+        }
+        return entries.values().toArray(new IndexEntry[0]);
+    }
+
+    /**
+     * 只映射块所在的区间，段文件超过 2GB 时偏移量也不会溢出
+     */
+    private static byte[] readBlock(FileChannel channel, IndexEntry entry) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+        byte[] bytes = new byte[entry.length];
+        mapped.get(bytes);
+        return bytes;
+    }
+
+    private Path segmentPath(String deviceId) {
+        return dir.resolve(fileName(deviceId) + SEGMENT_SUFFIX);
+    }
+
+    private Path indexPath(String deviceId) {
+        return dir.resolve(fileName(deviceId) + INDEX_SUFFIX);
+    }
+
+    /**
+     * 设备ID直接作文件名，含特殊字符时改用十六进制
+     */
+    static String fileName(String deviceId) {
+        if (SAFE_FILE_NAME.matcher(deviceId).matches()) {
+            return deviceId;
+        }
+        StringBuilder sb = new StringBuilder("x");
+        for (byte b : deviceId.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    private static class IndexEntry {
+        private long day;
+        private long firstTime;
+        private long lastTime;
+        private long offset;
+        private int length;
+        private int count;
+    }
+
+    /**
+     * 一台设备一天的数据，按列编码：每列依次存放所有点的值，
+     * 时间、ID、坐标、监护人为与前一个点的差值，定位时间为与记录时间的差值，最后整体 Deflate 压缩
+     */
+    static class Block {
+
+        private static final int VERSION = 1;
+        private static final int COORDINATE_SCALE = 7;
+        private static final double COORDINATE_FACTOR = 1e7;
+
+        private int size;
+        private long[] createTimes = new long[256];
+        private long[] ids = new long[256];
+        private long[] latitudes = new long[256];
+        private long[] longitudes = new long[256];
+        /**
+         * 精度（厘米）+1，0 表示无
+         */
+        private long[] accuracies = new long[256];
+        /**
+         * 定位时间，Long.MIN_VALUE 表示无
+         */
+        private long[] timestamps = new long[256];
+        /**
+         * 监护人ID，0 表示无
+         */
+        private long[] guardianIds = new long[256];
+
+        void add(LocationData location) {
+            if (size == createTimes.length) {
+                int capacity = size + (size >> 1);
+                createTimes = Arrays.copyOf(createTimes, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                accuracies = Arrays.copyOf(accuracies, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                guardianIds = Arrays.copyOf(guardianIds, capacity);
+            }
+            createTimes[size] = toMillis(location.getCreate_time());
+            ids[size] = location.getId() == null ? 0 : location.getId();
+            latitudes[size] = Math.round(location.getLatitude().doubleValue() * COORDINATE_FACTOR);
+            longitudes[size] = Math.round(location.getLongitude().doubleValue() * COORDINATE_FACTOR);
+            accuracies[size] = location.getAccuracy() == null ? 0
+                    : Math.max(0, Math.round(location.getAccuracy().doubleValue() * 100)) + 1;
+            timestamps[size] = location.getTimestamp() == null ? Long.MIN_VALUE : location.getTimestamp().getTime();
+            guardianIds[size] = location.getGuardian_id() == null ? 0 : location.getGuardian_id();
+            size++;
+        }
+
+        LocationData toLocationData(String deviceId, int i) {
+            LocationData location = new LocationData();
+            location.setId(ids[i] == 0 ? null : ids[i]);
+            location.setDevice_id(deviceId);
+            location.setLatitude(BigDecimal.valueOf(latitudes[i], COORDINATE_SCALE));
+            location.setLongitude(BigDecimal.valueOf(longitudes[i], COORDINATE_SCALE));
+            location.setAccuracy(accuracies[i] == 0 ? null : BigDecimal.valueOf(accuracies[i] - 1, 2));
+            location.setTimestamp(timestamps[i] == Long.MIN_VALUE ? null : new Date(timestamps[i]));
+            location.setGuardian_id(guardianIds[i] == 0 ? null : guardianIds[i]);
+            location.setCreate_time(LocalDateTime.ofInstant(Instant.ofEpochMilli(createTimes[i]), ZoneId.systemDefault()));
+            return location;
+        }
+
+        byte[] encode() {
+            TrajectoryCodec.ByteSink sink = new TrajectoryCodec.ByteSink(16 + size * 12);
+            sink.write(VERSION);
+            sink.writeVarint(size);
+            writeDeltas(sink, createTimes);
+            writeDeltas(sink, ids);
+            writeDeltas(sink, latitudes);
+            writeDeltas(sink, longitudes);
+            for (int i = 0; i < size; i++) {
+                sink.writeVarint(accuracies[i]);
+            }
+            for (int i = 0; i < size; i++) {
+                sink.writeVarint(timestamps[i] == Long.MIN_VALUE ? 0
+                        : TrajectoryCodec.zigzag(timestamps[i] - createTimes[i]) + 1);
+            }
+            writeDeltas(sink, guardianIds);
+            return deflate(sink.toByteArray());
+        }
+
+        static Block decode(byte[] compressed) throws DataFormatException {
+            byte[] raw = inflate(compressed);
+            int[] pos = {0};
+            int version = raw[pos[0]++];
+            if (version != VERSION) {
+                throw new DataFormatException("不支持的归档块版本: " + version);
+            }
+            Block block = new Block();
+            int size = (int) TrajectoryCodec.readVarint(raw, pos);
+            block.size = size;
+            block.createTimes = readDeltas(raw, pos, size);
+            block.ids = readDeltas(raw, pos, size);
+            block.latitudes = readDeltas(raw, pos, size);
+            block.longitudes = readDeltas(raw, pos, size);
+            block.accuracies = new long[size];
+            for (int i = 0; i < size; i++) {
+                block.accuracies[i] = TrajectoryCodec.readVarint(raw, pos);
+            }
+            block.timestamps = new long[size];
+            for (int i = 0; i < size; i++) {
+                long value = TrajectoryCodec.readVarint(raw, pos);
+                block.timestamps[i] = value == 0 ? Long.MIN_VALUE
+                        : block.createTimes[i] + TrajectoryCodec.unzigzag(value - 1);
+            }
+            block.guardianIds = readDeltas(raw, pos, size);
+            return block;
+        }
+
+        private void writeDeltas(TrajectoryCodec.ByteSink sink, long[] values) {
+            long last = 0;
+            for (int i = 0; i < size; i++) {
+                sink.writeVarint(TrajectoryCodec.zigzag(values[i] - last));
+                last = values[i];
+            }
+        }
+
+        private static long[] readDeltas(byte[] raw, int[] pos, int size) {
+            long[] values = new long[size];
+            long last = 0;
+            for (int i = 0; i < size; i++) {
+                last += TrajectoryCodec.unzigzag(TrajectoryCodec.readVarint(raw, pos));
+                values[i] = last;
+            }
+            return values;
+        }
+
+        static byte[] deflate(byte[] raw) {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        static byte[] inflate(byte[] compressed) throws DataFormatException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 3);
+                byte[] chunk = new byte[8192];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(chunk);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException("归档块不完整");
+                    }
+                    out.write(chunk, 0, n);
+                }
+                return out.toByteArray();
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+}
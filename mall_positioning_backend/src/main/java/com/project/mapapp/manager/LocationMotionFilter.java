@@ -0,0 +1,117 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.enums.DeviceTypeEnum;
+import com.project.mapapp.utils.GeoUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 静止点抑制：设备在原地停留时只按心跳间隔保留位置点，
+ * 被抑制的点不落库、不校验围栏、不推送
+ *
+ */
+@Slf4j
+@Component
+public class LocationMotionFilter {
+
+    private final LocationProperties.MotionFilter config;
+    private final DeviceRoutingTable deviceRoutingTable;
+
+    /**
+     * 设备ID -> 最近一个被保留的点
+     */
+    private final ConcurrentMap<String, LocationPoint> lastKept = new ConcurrentHashMap<>();
+    private final LongAdder suppressedCount = new LongAdder();
+
+    public LocationMotionFilter(LocationProperties locationProperties, DeviceRoutingTable deviceRoutingTable) {
+        this.config = locationProperties.getMotionFilter();
+        this.deviceRoutingTable = deviceRoutingTable;
+    }
+
+    /**
+     * 判断该点是否需要保留，保留时同时更新设备的参考点
+     */
+    public boolean accept(LocationPoint point) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        LocationProperties.MotionThreshold threshold = thresholdOf(point.getDeviceId());
+        boolean[] kept = new boolean[1];
+        lastKept.compute(point.getDeviceId(), (deviceId, last) -> {
+            if (last != null && timeOf(point) < timeOf(last)) {
+                // 乱序到达的旧点无法判断是否静止，直接保留，参考点不回退
+                kept[0] = true;
+                return last;
+            }
+            if (last == null || isMoved(last, point, threshold)) {
+                kept[0] = true;
+                return point;
+            }
+            return last;
+        });
+        if (!kept[0]) {
+            suppressedCount.increment();
+        }
+        return kept[0];
+    }
+
+    /**
+     * 批量过滤，保持原有顺序
+     */
+    public List<LocationPoint> filter(List<LocationPoint> points) {
+        if (!config.isEnabled()) {
+            return points;
+        }
+        List<LocationPoint> kept = new ArrayList<>(points.size());
+        for (LocationPoint point : points) {
+            if (accept(point)) {
+                kept.add(point);
+            }
+        }
+        return kept;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    private boolean isMoved(LocationPoint last, LocationPoint point, LocationProperties.MotionThreshold threshold) {
+        if (timeOf(point) - timeOf(last) >= threshold.getHeartbeatMs()) {
+            return true;
+        }
+        double accuracy = Math.max(point.hasAccuracy() ? point.getAccuracy() : 0,
+                last.hasAccuracy() ? last.getAccuracy() : 0);
+        double minDistance = Math.max(threshold.getMinDistanceMeters(), accuracy * threshold.getAccuracyFactor());
+        double distance = GeoUtils.distanceMeters(last.getLatitude(), last.getLongitude(),
+                point.getLatitude(), point.getLongitude());
+        return distance >= minDistance;
+    }
+
+    private LocationProperties.MotionThreshold thresholdOf(String deviceId) {
+        if (!config.getDeviceTypes().isEmpty()) {
+            DeviceTypeEnum type = deviceRoutingTable.getDeviceType(deviceId);
+            if (type != null) {
+                LocationProperties.MotionThreshold threshold = config.getDeviceTypes().get(type.getValue());
+                if (threshold != null) {
+                    return threshold;
+                }
+            }
+        }
+        return config;
+    }
+
+    /**
+     * 优先使用设备端定位时间，未上报时使用服务端接收时间
+     */
+    private static long timeOf(LocationPoint point) {
+        return point.getTimestamp() > 0 ? point.getTimestamp() : point.getCreateTime();
+    }
+}
@@ -0,0 +1,80 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按设备定位时间保证实时链路单调：
+ * 断线重连补传的旧点、乱序到达的点仍然写入历史，但不再推送、不再校验围栏，
+ * 避免旧点覆盖“最新位置”并触发误报
+ *
+ */
+@Component
+public class LocationOrderGuard {
+
+    private static final Comparator<LocationPoint> BY_TIMESTAMP = Comparator.comparingLong(LocationPoint::getTimestamp);
+
+    private final LocationProperties.Reorder config;
+
+    /**
+     * 设备ID -> 已进入实时链路的最新定位时间
+     */
+    private final ConcurrentMap<String, AtomicLong> liveHighWater = new ConcurrentHashMap<>();
+    private final LongAdder lateCount = new LongAdder();
+
+    public LocationOrderGuard(LocationProperties locationProperties) {
+        this.config = locationProperties.getReorder();
+    }
+
+    /**
+     * 补全定位时间：未上报或明显超前（设备时钟错误）时使用服务端接收时间
+     */
+    public void normalize(LocationPoint point) {
+        long timestamp = point.getTimestamp();
+        if (timestamp <= 0 || timestamp - point.getCreateTime() > config.getMaxFutureSkewMs()) {
+            point.setTimestamp(point.getCreateTime());
+        }
+    }
+
+    /**
+     * 批量补传的点按定位时间排序（稳定排序，同一时间保持到达顺序）
+     */
+    public void sort(List<LocationPoint> points) {
+        if (config.isEnabled() && points.size() > 1) {
+            points.sort(BY_TIMESTAMP);
+        }
+    }
+
+    /**
+     * 判断定位点能否进入实时链路（推送、围栏），比已进入的点旧的视为迟到点，只写历史
+     */
+    public boolean admitLive(LocationPoint point) {
+        if (!config.isEnabled()) {
+            return true;
+        }
+        AtomicLong highWater = liveHighWater.computeIfAbsent(point.getDeviceId(), k -> new AtomicLong());
+        long timestamp = point.getTimestamp();
+        while (true) {
+            long current = highWater.get();
+            if (timestamp <= current) {
+                lateCount.increment();
+                return false;
+            }
+            if (highWater.compareAndSet(current, timestamp)) {
+                return true;
+            }
+        }
+    }
+
+    public long getLateCount() {
+        return lateCount.sum();
+    }
+}
@@ -0,0 +1,217 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 位置表按月分表：location_data_yyyyMM，按记录时间（create_time）归属月份
+ * 写入按每个点的记录时间分组到对应月表，时间范围查询只访问与范围重叠的月表，过期月份整表删除
+ * SQL 中的 location_data 由 MyBatis-Plus 动态表名插件替换为当前线程指定的月表，未指定时不替换
+ *
+ */
+@Slf4j
+@Component
+public class LocationPartitionRouter {
+
+    public static final String BASE_TABLE = "location_data";
+
+    private static final DateTimeFormatter SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 当前线程访问的实际表名
+     */
+    private static final ThreadLocal<String> CURRENT_TABLE = new ThreadLocal<>();
+
+    private final LocationProperties.Partition config;
+    private final LocationDataMapper locationDataMapper;
+
+    /**
+     * 库中已存在的月表
+     */
+    private final NavigableSet<YearMonth> partitions = new ConcurrentSkipListSet<>();
+
+    private ScheduledExecutorService maintainer;
+
+    public LocationPartitionRouter(LocationProperties locationProperties, LocationDataMapper locationDataMapper) {
+        this.config = locationProperties.getPartition();
+        this.locationDataMapper = locationDataMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        maintain();
+        maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-partition");
+            t.setDaemon(true);
+            return t;
+        });
+        maintainer.scheduleWithFixedDelay(this::maintainSafely, 1, 1, TimeUnit.HOURS);
+        log.info("位置表按月分表已开启 - 现有月表: {}, 保留月数: {}", partitions, config.getRetentionMonths());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 动态表名处理：当前线程指定了月表时把 location_data 替换为月表
+     */
+    public static String resolveTableName(String tableName) {
+        String routed = CURRENT_TABLE.get();
+        return routed != null && BASE_TABLE.equals(tableName) ? routed : tableName;
+    }
+
+    /**
+     * 当前线程是否指定了月表
+     */
+    public static boolean isRouting() {
+        return CURRENT_TABLE.get() != null;
+    }
+
+    /**
+     * 在指定表上执行数据库操作
+     */
+    public <T> T withTable(String table, Supplier<T> action) {
+        if (BASE_TABLE.equals(table)) {
+            return action.get();
+        }
+        String previous = CURRENT_TABLE.get();
+        CURRENT_TABLE.set(table);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_TABLE.remove();
+            } else {
+                CURRENT_TABLE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 多行插入，按记录时间写入对应月表；批次内的点不保证按时间排序，逐点分组
+     */
+    public int insertBatch(List<LocationPoint> points) {
+        if (!config.isEnabled() || points.isEmpty()) {
+            return locationDataMapper.insertBatch(points);
+        }
+        Map<YearMonth, List<LocationPoint>> byMonth = new TreeMap<>();
+        for (LocationPoint point : points) {
+            byMonth.computeIfAbsent(monthOf(point.getCreateTime()), k -> new ArrayList<>()).add(point);
+        }
+        int inserted = 0;
+        for (Map.Entry<YearMonth, List<LocationPoint>> entry : byMonth.entrySet()) {
+            inserted += insertInto(entry.getKey(), entry.getValue());
+        }
+        return inserted;
+    }
+
+    /**
+     * 与时间范围重叠的表，按时间先后排列；未开启分表时只有 location_data
+     *
+     * @param start 为空表示不限开始时间
+     * @param end   为空表示不限结束时间
+     */
+    public List<String> tablesFor(LocalDateTime start, LocalDateTime end) {
+        if (!config.isEnabled()) {
+            return Collections.singletonList(BASE_TABLE);
+        }
+        if (partitions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        YearMonth from = start == null ? partitions.first() : YearMonth.from(start);
+        YearMonth to = end == null ? partitions.last() : YearMonth.from(end);
+        if (from.isAfter(to)) {
+            return Collections.emptyList();
+        }
+        List<String> tables = new ArrayList<>();
+        for (YearMonth month : partitions.subSet(from, true, to, true)) {
+            tables.add(tableName(month));
+        }
+        return tables;
+    }
+
+    /**
+     * 建好当月和下月的表，删除超出保留期的月表
+     */
+    public void maintain() {
+        for (String table : locationDataMapper.listPartitionTables()) {
+            partitions.add(YearMonth.parse(table.substring(BASE_TABLE.length() + 1), SUFFIX_FORMATTER));
+        }
+        YearMonth current = YearMonth.now();
+        ensurePartition(current);
+        ensurePartition(current.plusMonths(1));
+
+        if (config.getRetentionMonths() > 0) {
+            YearMonth oldest = current.minusMonths(config.getRetentionMonths() - 1);
+            for (YearMonth month : new ArrayList<>(partitions.headSet(oldest, false))) {
+                // 整表删除是元数据操作，不会像大范围 DELETE 那样长时间锁表和产生大量 binlog
+                partitions.remove(month);
+                locationDataMapper.dropPartition(tableName(month));
+                log.info("删除过期位置月表: {}", tableName(month));
+            }
+        }
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (Exception e) {
+            log.error("位置月表维护失败", e);
+        }
+    }
+
+    private int insertInto(YearMonth month, List<LocationPoint> points) {
+        ensurePartition(month);
+        return withTable(tableName(month), () -> locationDataMapper.insertBatch(points));
+    }
+
+    private void ensurePartition(YearMonth month) {
+        if (partitions.contains(month)) {
+            return;
+        }
+        locationDataMapper.createPartition(tableName(month));
+        partitions.add(month);
+        log.info("创建位置月表: {}", tableName(month));
+    }
+
+    private static YearMonth monthOf(long epochMillis) {
+        return YearMonth.from(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+
+    private static String tableName(YearMonth month) {
+        return BASE_TABLE + "_" + month.format(SUFFIX_FORMATTER);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+        }
+    }
+}
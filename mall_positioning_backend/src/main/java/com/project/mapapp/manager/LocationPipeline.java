@@ -0,0 +1,288 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.vo.PipelineStageStatsVO;
+import com.project.mapapp.service.GeoFenceService;
+import com.project.mapapp.service.WebSocketService;
+import com.project.mapapp.utils.RingBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 位置处理流水线：路由 -> 落库 -> 围栏校验 -> 推送
+ * 每个阶段有独立的工作线程，阶段之间通过有界环形队列衔接；同一设备的点按设备ID固定分配到同一线程，
+ * 保证单设备内顺序。慢的 MySQL 和慢的 WebSocket 客户端只拖慢各自的阶段，不再叠加到每次上报上
+ *
+ */
+@Slf4j
+@Component
+public class LocationPipeline {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LocationProperties.Pipeline config;
+    private final DeviceRoutingTable deviceRoutingTable;
+    private final TrajectoryStore trajectoryStore;
+    private final TrajectoryAppendNotifier trajectoryAppendNotifier;
+    private final LocationWriteBuffer locationWriteBuffer;
+    private final GeoFenceService geoFenceService;
+    private final WebSocketService webSocketService;
+
+    private Stage route;
+    private Stage persist;
+    private Stage fence;
+    private Stage fanout;
+
+    public LocationPipeline(LocationProperties locationProperties,
+                            DeviceRoutingTable deviceRoutingTable,
+                            TrajectoryStore trajectoryStore,
+                            TrajectoryAppendNotifier trajectoryAppendNotifier,
+                            LocationWriteBuffer locationWriteBuffer,
+                            GeoFenceService geoFenceService,
+                            WebSocketService webSocketService) {
+        this.config = locationProperties.getPipeline();
+        this.deviceRoutingTable = deviceRoutingTable;
+        this.trajectoryStore = trajectoryStore;
+        this.trajectoryAppendNotifier = trajectoryAppendNotifier;
+        this.locationWriteBuffer = locationWriteBuffer;
+        this.geoFenceService = geoFenceService;
+        this.webSocketService = webSocketService;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // 下游先启动，上游才有地方投递
+        fanout = new Stage("fanout", config.getFanoutWorkers(), config.getRingSize(), 1, this::fanout);
+        fence = new Stage("fence", config.getFenceWorkers(), config.getRingSize(), 1, this::evaluateFence);
+        persist = new Stage("persist", config.getPersistWorkers(), config.getRingSize(), config.getPersistBatchSize(), this::persist);
+        route = new Stage("route", config.getRouteWorkers(), config.getRingSize(), 64, this::route);
+        log.info("位置处理流水线已开启 - 路由: {}, 落库: {}, 围栏: {}, 推送: {}",
+                config.getRouteWorkers(), config.getPersistWorkers(), config.getFenceWorkers(), config.getFanoutWorkers());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 请求线程投递定位点，入口队列满时最多等待 offerTimeoutMs
+     */
+    public void submit(LocationPoint point) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getOfferTimeoutMs());
+        if (!route.publish(point, deadline)) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "位置处理繁忙，请稍后重试");
+        }
+    }
+
+    public List<PipelineStageStatsVO> getStats() {
+        List<PipelineStageStatsVO> stats = new ArrayList<>(4);
+        if (!config.isEnabled()) {
+            return stats;
+        }
+        stats.add(route.stats());
+        stats.add(persist.stats());
+        stats.add(fence.stats());
+        stats.add(fanout.stats());
+        return stats;
+    }
+
+    /**
+     * 路由：补全主监护人和需要推送的监护人
+     */
+    private void route(List<LocationPoint> points) {
+        for (LocationPoint point : points) {
+            if (point.getGuardianId() == null) {
+                point.setGuardianId(deviceRoutingTable.getPrimaryGuardianId(point.getDeviceId()));
+            }
+            if (!point.isPersistOnly()) {
+                point.setGuardianIds(deviceRoutingTable.getGuardianIds(point.getDeviceId()));
+            }
+            persist.publish(point);
+        }
+    }
+
+    /**
+     * 落库：整批多行插入（开启写缓冲时只入队）
+     */
+    private void persist(List<LocationPoint> points) {
+        try {
+            if (locationWriteBuffer.isEnabled()) {
+                locationWriteBuffer.offerAll(points);
+            } else {
+                try {
+                    trajectoryStore.append(points);
+                } catch (Exception e) {
+                    // 上报方已收到成功回执，写库失败的批次落到本地文件由写缓冲稍后补录
+                    log.error("流水线写入位置失败，{} 条数据转入本地文件", points.size(), e);
+                    locationWriteBuffer.spill(points);
+                    return;
+                }
+                trajectoryAppendNotifier.appended(points);
+            }
+        } finally {
+            // 写库失败不影响实时推送
+            for (LocationPoint point : points) {
+                if (!point.isPersistOnly()) {
+                    fence.publish(point);
+                }
+            }
+        }
+    }
+
+    private void evaluateFence(List<LocationPoint> points) {
+        for (LocationPoint point : points) {
+            try {
+                geoFenceService.checkLocation(point);
+            } finally {
+                fanout.publish(point);
+            }
+        }
+    }
+
+    private void fanout(List<LocationPoint> points) {
+        for (LocationPoint point : points) {
+            webSocketService.notifyGuardians(point.getGuardianIds(), LocationResponseDTO.from(point));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        // 按上游到下游的顺序停止，每个阶段处理完队列中剩余的点再退出
+        route.stop();
+        persist.stop();
+        fence.stop();
+        fanout.stop();
+        log.info("位置处理流水线已关闭");
+    }
+
+    private interface StageHandler {
+        void handle(List<LocationPoint> points);
+    }
+
+    /**
+     * 一个处理阶段：每个工作线程独占一个环形队列，按设备ID分配
+     */
+    private static class Stage {
+        private final String name;
+        private final int batchSize;
+        private final StageHandler handler;
+        private final RingBuffer<LocationPoint>[] lanes;
+        private final Thread[] workers;
+        private volatile boolean running = true;
+
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder backpressure = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+
+        @SuppressWarnings("unchecked")
+        Stage(String name, int workerCount, int ringSize, int batchSize, StageHandler handler) {
+            this.name = name;
+            this.batchSize = batchSize;
+            this.handler = handler;
+            int count = Math.max(1, workerCount);
+            this.lanes = new RingBuffer[count];
+            this.workers = new Thread[count];
+            for (int i = 0; i < count; i++) {
+                RingBuffer<LocationPoint> lane = new RingBuffer<>(ringSize);
+                lanes[i] = lane;
+                Thread worker = new Thread(() -> runWorker(lane), "location-" + name + "-" + i);
+                worker.setDaemon(true);
+                workers[i] = worker;
+                worker.start();
+            }
+        }
+
+        /**
+         * 阶段间投递，下游满时一直等待，形成背压
+         */
+        void publish(LocationPoint point) {
+            publish(point, Long.MAX_VALUE);
+        }
+
+        boolean publish(LocationPoint point, long deadlineNanos) {
+            RingBuffer<LocationPoint> lane = lanes[Math.floorMod(point.getDeviceId().hashCode(), lanes.length)];
+            if (lane.offer(point)) {
+                return true;
+            }
+            backpressure.increment();
+            while (!lane.offer(point)) {
+                if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            return true;
+        }
+
+        private void runWorker(RingBuffer<LocationPoint> lane) {
+            List<LocationPoint> batch = new ArrayList<>(batchSize);
+            while (running || !lane.isEmpty()) {
+                if (lane.drainTo(batch, batchSize) == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    handler.handle(batch);
+                    processed.add(batch.size());
+                } catch (Exception e) {
+                    failed.add(batch.size());
+                    log.error("位置流水线 {} 阶段处理失败，丢弃 {} 条", name, batch.size(), e);
+                }
+                busyNanos.add(System.nanoTime() - start);
+                batch.clear();
+            }
+        }
+
+        void stop() {
+            running = false;
+            for (Thread worker : workers) {
+                try {
+                    worker.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        PipelineStageStatsVO stats() {
+            PipelineStageStatsVO vo = new PipelineStageStatsVO();
+            vo.setStage(name);
+            vo.setWorkers(workers.length);
+            int depth = 0;
+            int capacity = 0;
+            for (RingBuffer<LocationPoint> lane : lanes) {
+                depth += lane.size();
+                capacity += lane.capacity();
+            }
+            vo.setDepth(depth);
+            vo.setCapacity(capacity);
+            long done = processed.sum() + failed.sum();
+            vo.setProcessed(processed.sum());
+            vo.setFailed(failed.sum());
+            vo.setBackpressure(backpressure.sum());
+            vo.setAvgMicros(done == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(busyNanos.sum()) / done);
+            return vo;
+        }
+    }
+}
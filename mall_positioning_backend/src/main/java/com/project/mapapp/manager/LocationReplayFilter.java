@@ -0,0 +1,239 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重复上报过滤：网络超时重试、断线重连补传都会带来重复的定位点
+ * 每台设备维护一个高水位序号和一个环形位图窗口，窗口内允许乱序，已见过的序号直接丢弃，
+ * 在落库、围栏校验和推送之前完成
+ *
+ */
+@Slf4j
+@Component
+public class LocationReplayFilter {
+
+    private static final String REDIS_HWM_PREFIX = "location:seq:hwm:";
+    private static final String REDIS_BITS_PREFIX = "location:seq:bits:";
+
+    /**
+     * 与本地实现相同的算法：KEYS[1] 高水位，KEYS[2] 位图
+     * ARGV: 序号, 窗口, 重置间隔, 过期秒数；返回 1 表示首次出现
+     */
+    private static final RedisScript<Long> MARK_SCRIPT = new DefaultRedisScript<>(
+            "local seq = tonumber(ARGV[1]) " +
+            "local w = tonumber(ARGV[2]) " +
+            "local hwm = tonumber(redis.call('GET', KEYS[1])) " +
+            "local fresh = 1 " +
+            "if hwm == nil or hwm - seq > tonumber(ARGV[3]) then " +
+            "  redis.call('DEL', KEYS[2]) " +
+            "  hwm = seq " +
+            "elseif seq > hwm then " +
+            "  if seq - hwm >= w then " +
+            "    redis.call('DEL', KEYS[2]) " +
+            "  else " +
+            "    for k = hwm + 1, seq do redis.call('SETBIT', KEYS[2], k % w, 0) end " +
+            "  end " +
+            "  hwm = seq " +
+            "elseif hwm - seq >= w then " +
+            "  fresh = 0 " +
+            "end " +
+            "if fresh == 1 and redis.call('SETBIT', KEYS[2], seq % w, 1) == 1 then fresh = 0 end " +
+            "redis.call('SET', KEYS[1], string.format('%d', hwm), 'EX', ARGV[4]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[4]) " +
+            "return fresh",
+            Long.class);
+
+    /**
+     * 撤销标记：序号仍在窗口内时清除其位；ARGV: 序号, 窗口
+     */
+    private static final RedisScript<Long> UNMARK_SCRIPT = new DefaultRedisScript<>(
+            "local seq = tonumber(ARGV[1]) " +
+            "local w = tonumber(ARGV[2]) " +
+            "local hwm = tonumber(redis.call('GET', KEYS[1])) " +
+            "if hwm ~= nil and seq <= hwm and hwm - seq < w then redis.call('SETBIT', KEYS[2], seq % w, 0) end " +
+            "return 0",
+            Long.class);
+
+    private final LocationProperties.Dedup config;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ConcurrentMap<String, SeqWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder duplicateCount = new LongAdder();
+
+    public LocationReplayFilter(LocationProperties locationProperties, StringRedisTemplate stringRedisTemplate) {
+        this.config = locationProperties.getDedup();
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 判断上报是否为重复/重放，无法取得去重键的上报（默认即未携带序号的上报）一律放行
+     */
+    public boolean isDuplicate(String deviceId, LocationReportDTO report) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        Long key = keyOf(report);
+        if (key == null) {
+            return false;
+        }
+        boolean fresh = config.getMode() == LocationProperties.StateStore.REDIS
+                ? markRedis(deviceId, key)
+                : windows.computeIfAbsent(deviceId, k -> new SeqWindow(config.getWindow())).mark(key, config.getResetGap());
+        if (!fresh) {
+            duplicateCount.increment();
+        }
+        return !fresh;
+    }
+
+    /**
+     * 批量过滤，保持原有顺序
+     */
+    public List<LocationReportDTO> filter(String deviceId, List<LocationReportDTO> reports) {
+        if (!config.isEnabled()) {
+            return reports;
+        }
+        List<LocationReportDTO> fresh = new ArrayList<>(reports.size());
+        for (LocationReportDTO report : reports) {
+            if (!isDuplicate(deviceId, report)) {
+                fresh.add(report);
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * 撤销已放行上报的标记：处理或投递失败后调用，设备用同一序号重试时不会被当作重复丢弃
+     */
+    public void forget(String deviceId, LocationReportDTO report) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Long key = keyOf(report);
+        if (key == null) {
+            return;
+        }
+        if (config.getMode() == LocationProperties.StateStore.REDIS) {
+            try {
+                stringRedisTemplate.execute(UNMARK_SCRIPT,
+                        Arrays.asList(REDIS_HWM_PREFIX + deviceId, REDIS_BITS_PREFIX + deviceId),
+                        String.valueOf(key), String.valueOf(config.getWindow()));
+            } catch (Exception e) {
+                log.warn("Redis 撤销去重标记失败 - deviceId: {}", deviceId, e);
+            }
+        }
+        // Redis 不可用时标记可能落在本地窗口，一并撤销
+        SeqWindow window = windows.get(deviceId);
+        if (window != null) {
+            window.unmark(key);
+        }
+    }
+
+    public void forget(String deviceId, List<LocationReportDTO> reports) {
+        for (LocationReportDTO report : reports) {
+            forget(deviceId, report);
+        }
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+
+    /**
+     * 去重键：优先用序号，没有序号且开启了按定位时间去重时用按精度取整的定位时间，否则返回 null
+     */
+    private Long keyOf(LocationReportDTO report) {
+        if (report.getSeq() != null) {
+            return report.getSeq();
+        }
+        if (report.getCreateTime() != null && config.getTimestampResolutionMs() > 0) {
+            return report.getCreateTime().getTime() / config.getTimestampResolutionMs();
+        }
+        return null;
+    }
+
+    private boolean markRedis(String deviceId, long key) {
+        try {
+            Long fresh = stringRedisTemplate.execute(MARK_SCRIPT,
+                    Arrays.asList(REDIS_HWM_PREFIX + deviceId, REDIS_BITS_PREFIX + deviceId),
+                    String.valueOf(key), String.valueOf(config.getWindow()),
+                    String.valueOf(config.getResetGap()), String.valueOf(config.getRedisTtlSeconds()));
+            return fresh == null || fresh == 1L;
+        } catch (Exception e) {
+            // Redis 不可用时退化为本地窗口，不阻断上报
+            log.warn("Redis 去重不可用，退化为本地去重 - deviceId: {}", deviceId, e);
+            return windows.computeIfAbsent(deviceId, k -> new SeqWindow(config.getWindow())).mark(key, config.getResetGap());
+        }
+    }
+
+    /**
+     * 单设备的高水位 + 环形位图，位 k % size 记录序号 k 是否出现过
+     */
+    static class SeqWindow {
+        private final long[] bits;
+        private final int size;
+        private long highWater;
+        private boolean initialized;
+
+        SeqWindow(int size) {
+            this.size = size;
+            this.bits = new long[(size + 63) >>> 6];
+        }
+
+        /**
+         * 记录序号，首次出现返回 true
+         */
+        synchronized boolean mark(long seq, long resetGap) {
+            if (!initialized || highWater - seq > resetGap) {
+                Arrays.fill(bits, 0L);
+                highWater = seq;
+                initialized = true;
+            } else if (seq > highWater) {
+                if (seq - highWater >= size) {
+                    Arrays.fill(bits, 0L);
+                } else {
+                    // 新的高水位复用的是 seq - size 的位，一并清除
+                    for (long k = highWater + 1; k <= seq; k++) {
+                        clear(k);
+                    }
+                }
+                highWater = seq;
+            } else if (highWater - seq >= size) {
+                return false;
+            }
+            int index = (int) Math.floorMod(seq, (long) size);
+            long mask = 1L << index;
+            if ((bits[index >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[index >>> 6] |= mask;
+            return true;
+        }
+
+        /**
+         * 清除仍在窗口内的序号
+         */
+        synchronized void unmark(long seq) {
+            if (initialized && seq <= highWater && highWater - seq < size) {
+                clear(seq);
+            }
+        }
+
+        private void clear(long seq) {
+            int index = (int) Math.floorMod(seq, (long) size);
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
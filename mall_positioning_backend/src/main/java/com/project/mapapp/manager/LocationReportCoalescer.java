@@ -0,0 +1,139 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
+import com.project.mapapp.service.LocationDataService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单设备上报限流与合并
+ * 令牌不足时不拒绝上报，只保留该设备最新的一条，待令牌补充后由后台线程按上报模式处理（MQ 模式同样投递到队列），
+ * 被后来者覆盖的上报计为丢弃
+ *
+ */
+@Slf4j
+@Component
+public class LocationReportCoalescer {
+
+    private final DeviceRateLimiter deviceRateLimiter;
+    private final LocationDataService locationDataService;
+    private final LocationProperties.RateLimit config;
+
+    /**
+     * 设备ID -> 等待处理的最新上报（deviceId、guardianId 已填充）
+     */
+    private final ConcurrentMap<String, LocationReportDTO> pending = new ConcurrentHashMap<>();
+    private final LongAdder limitedCount = new LongAdder();
+    private final LongAdder shedCount = new LongAdder();
+
+    private ScheduledExecutorService drainer;
+
+    public LocationReportCoalescer(DeviceRateLimiter deviceRateLimiter,
+                                   LocationDataService locationDataService,
+                                   LocationProperties locationProperties) {
+        this.deviceRateLimiter = deviceRateLimiter;
+        this.locationDataService = locationDataService;
+        this.config = locationProperties.getRateLimit();
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-coalesce-drainer");
+            t.setDaemon(true);
+            return t;
+        });
+        drainer.scheduleWithFixedDelay(this::drainSafely,
+                config.getDrainIntervalMs(), config.getDrainIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("设备上报限流已开启 - 模式: {}, 速率: {}/s, 突发: {}",
+                config.getMode(), config.getPermitsPerSecond(), config.getBurst());
+    }
+
+    /**
+     * 判断上报能否立即处理；不能时暂存为该设备的最新待处理点，返回 false
+     */
+    public boolean admit(LocationReportDTO report) {
+        String deviceId = report.getDeviceId();
+        if (deviceRateLimiter.tryAcquire(deviceId)) {
+            // 已有更新的点直接处理，之前暂存的旧点作废
+            if (config.isEnabled() && pending.remove(deviceId) != null) {
+                shedCount.increment();
+            }
+            return true;
+        }
+        limitedCount.increment();
+        if (pending.put(deviceId, report) != null) {
+            shedCount.increment();
+        }
+        return false;
+    }
+
+    public long getLimitedCount() {
+        return limitedCount.sum();
+    }
+
+    public long getShedCount() {
+        return shedCount.sum();
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+            deviceRateLimiter.evictIdle();
+        } catch (Exception e) {
+            log.error("处理合并后的位置上报失败", e);
+        }
+    }
+
+    private void drain() {
+        for (String deviceId : pending.keySet()) {
+            if (!deviceRateLimiter.tryAcquire(deviceId)) {
+                continue;
+            }
+            LocationReportDTO report = pending.remove(deviceId);
+            if (report == null) {
+                continue;
+            }
+            try {
+                locationDataService.ingestLocation(report);
+            } catch (Exception e) {
+                log.error("处理合并后的位置上报失败 - deviceId: {}", deviceId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (drainer == null) {
+            return;
+        }
+        drainer.shutdown();
+        // 关闭前不再等待令牌，把暂存的最新位置处理掉
+        for (LocationReportDTO report : pending.values()) {
+            try {
+                locationDataService.ingestLocation(report);
+            } catch (Exception e) {
+                log.error("处理合并后的位置上报失败 - deviceId: {}", report.getDeviceId(), e);
+            }
+        }
+        pending.clear();
+        log.info("设备上报限流已关闭 - 限流: {}, 合并丢弃: {}", limitedCount.sum(), shedCount.sum());
+    }
+}
@@ -0,0 +1,319 @@
+package com.project.mapapp.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 位置数据写缓冲：请求线程只负责入队，后台线程按时间或行数批量写库
+ *
+ */
+@Slf4j
+@Component
+public class LocationWriteBuffer {
+
+    private static final String SPILL_FILE = "location-spill.jsonl";
+    private static final String REPLAY_FILE = "location-spill.replaying";
+    /**
+     * 补录文件中已写入部分的字节位置
+     */
+    private static final String REPLAY_OFFSET_FILE = "location-spill.replaying.offset";
+    /**
+     * 关闭写缓冲时检查本地文件补录的间隔（毫秒）
+     */
+    private static final long REPLAY_INTERVAL_MS = 5000;
+
+    private final TrajectoryStore trajectoryStore;
+    private final TrajectoryAppendNotifier trajectoryAppendNotifier;
+    private final ObjectMapper objectMapper;
+    private final LocationProperties.WriteBehind config;
+
+    private BlockingQueue<LocationPoint> queue;
+    private ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final Object spillLock = new Object();
+
+    public LocationWriteBuffer(TrajectoryStore trajectoryStore,
+                               TrajectoryAppendNotifier trajectoryAppendNotifier,
+                               ObjectMapper objectMapper,
+                               LocationProperties locationProperties) {
+        this.trajectoryStore = trajectoryStore;
+        this.trajectoryAppendNotifier = trajectoryAppendNotifier;
+        this.objectMapper = objectMapper;
+        this.config = locationProperties.getWriteBehind();
+    }
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        if (!config.isEnabled()) {
+            // 关闭写缓冲时只负责补录：流水线写库失败落盘的批次，以及上次运行遗留的文件
+            flusher.scheduleWithFixedDelay(this::replaySafely,
+                    REPLAY_INTERVAL_MS, REPLAY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(config.getCapacity());
+        flusher.scheduleWithFixedDelay(this::flushSafely,
+                config.getFlushIntervalMs(), config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("位置写缓冲已开启 - 容量: {}, 批量: {}, 间隔: {}ms, 溢出策略: {}",
+                config.getCapacity(), config.getBatchSize(), config.getFlushIntervalMs(), config.getOverflowPolicy());
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * 入队一条待写入的位置，队列满时按配置的策略处理
+     */
+    public void offer(LocationPoint location) {
+        if (!queue.offer(location)) {
+            handleOverflow(location);
+        }
+        if (queue.size() >= config.getBatchSize() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushSafely);
+        }
+    }
+
+    public void offerAll(List<LocationPoint> locations) {
+        for (LocationPoint location : locations) {
+            offer(location);
+        }
+    }
+
+    public int pendingCount() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    private void handleOverflow(LocationPoint location) {
+        switch (config.getOverflowPolicy()) {
+            case DROP_OLDEST:
+                while (!queue.offer(location)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+            case SPILL:
+                List<LocationPoint> single = new ArrayList<>(1);
+                single.add(location);
+                spill(single);
+                break;
+            case BLOCK:
+            default:
+                try {
+                    if (!queue.offer(location, config.getBlockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        throw new BusinessException(ErrorCode.SYSTEM_ERROR, "位置写入繁忙，请稍后重试");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "位置写入被中断");
+                }
+        }
+    }
+
+    private void flushSafely() {
+        flushRequested.set(false);
+        try {
+            flush();
+            replaySpill();
+        } catch (Exception e) {
+            log.error("位置写缓冲刷盘失败", e);
+        }
+    }
+
+    private void replaySafely() {
+        try {
+            replaySpill();
+        } catch (Exception e) {
+            log.error("补录本地落盘的位置数据失败", e);
+        }
+    }
+
+    /**
+     * 把队列中的数据按批量写库，写库失败的批次落到本地文件
+     */
+    private void flush() {
+        List<LocationPoint> batch = new ArrayList<>(config.getBatchSize());
+        while (queue.drainTo(batch, config.getBatchSize()) > 0) {
+            try {
+                write(batch);
+            } catch (Exception e) {
+                log.error("批量写入位置失败，{} 条数据转入本地文件", batch.size(), e);
+                spill(batch);
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 写入存储，成功后通知历史日缓存、停留点检测等监听方
+     */
+    private void write(List<LocationPoint> batch) {
+        trajectoryStore.append(batch);
+        trajectoryAppendNotifier.appended(batch);
+    }
+
+    /**
+     * 写库失败的点落到本地文件，由后台线程稍后补录；关闭写缓冲时流水线落库阶段也用它兜底
+     */
+    public void spill(List<LocationPoint> locations) {
+        Path file = Paths.get(config.getSpillDir(), SPILL_FILE);
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(file.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (LocationPoint location : locations) {
+                        writer.write(objectMapper.writeValueAsString(location));
+                        writer.newLine();
+                    }
+                }
+                spilledCount.addAndGet(locations.size());
+            } catch (IOException e) {
+                droppedCount.addAndGet(locations.size());
+                log.error("位置数据落盘失败，丢弃 {} 条", locations.size(), e);
+            }
+        }
+    }
+
+    /**
+     * 队列空闲时把本地文件中的数据补录到数据库；每写入一批记录一次文件位置，
+     * 中途失败时下次从该位置继续，已写入的批次不会重复补录
+     */
+    private void replaySpill() throws IOException {
+        Path dir = Paths.get(config.getSpillDir());
+        Path replay = dir.resolve(REPLAY_FILE);
+        synchronized (spillLock) {
+            Path spillFile = dir.resolve(SPILL_FILE);
+            if (!Files.exists(replay)) {
+                if (!Files.exists(spillFile) || (queue != null && !queue.isEmpty())) {
+                    return;
+                }
+                Files.move(spillFile, replay, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        Path offsetFile = dir.resolve(REPLAY_OFFSET_FILE);
+        long position = readReplayOffset(offsetFile);
+        List<LocationPoint> batch = new ArrayList<>(config.getBatchSize());
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(replay))) {
+            skipFully(in, position);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            while (true) {
+                int b = in.read();
+                if (b != -1) {
+                    position++;
+                    if (b != '\n') {
+                        line.write(b);
+                        continue;
+                    }
+                }
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                line.reset();
+                if (!text.isEmpty()) {
+                    batch.add(objectMapper.readValue(text, LocationPoint.class));
+                }
+                if (!batch.isEmpty() && (batch.size() >= config.getBatchSize() || b == -1)) {
+                    write(batch);
+                    batch.clear();
+                    saveReplayOffset(offsetFile, position);
+                }
+                if (b == -1) {
+                    break;
+                }
+            }
+        }
+        Files.delete(replay);
+        Files.deleteIfExists(offsetFile);
+        log.info("本地落盘的位置数据已补录");
+    }
+
+    private long readReplayOffset(Path offsetFile) throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return 0;
+        }
+        String text = new String(Files.readAllBytes(offsetFile), StandardCharsets.UTF_8).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    /**
+     * 先写临时文件再原子替换，避免写到一半的位置文件
+     */
+    private void saveReplayOffset(Path offsetFile, long position) throws IOException {
+        Path tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.write(tmp, String.valueOf(position).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, offsetFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        long skipped = 0;
+        while (skipped < bytes) {
+            long n = in.skip(bytes - skipped);
+            if (n <= 0) {
+                throw new IOException("补录文件短于已记录的位置");
+            }
+            skipped += n;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前把剩余数据写完，写不进数据库的落到本地文件，下次启动补录
+        if (queue != null) {
+            flush();
+        }
+        log.info("位置写缓冲已关闭 - 丢弃: {}, 落盘: {}", droppedCount.get(), spilledCount.get());
+    }
+}
@@ -0,0 +1,372 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * 按设备的内存映射轨迹文件：每台设备一个只追加的定长记录文件，写入只是内存拷贝，由后台线程定期刷盘，不经过数据库
+ * 文件头 64 字节（魔数、版本、记录长度、记录数），之后为定长记录；记录时间按设备单调不减，
+ * 每 indexInterval 条记录在内存中保留一个稀疏时间索引项，范围查询二分索引后顺序扫描
+ * 记录 ID 为设备内的序号（从 1 开始）
+ *
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "location.store", name = "type", havingValue = "mmap")
+public class MappedTrajectoryStore implements TrajectoryStore {
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final int MAGIC = 0x544A4C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+
+    /**
+     * 记录：记录时间(8) 定位时间(8，0 表示无) 监护人ID(8，0 表示无) 纬度(4) 经度(4) 精度厘米(4，-1 表示无)
+     */
+    private static final int RECORD_BYTES = 36;
+
+    private static final int COORDINATE_SCALE = 7;
+    private static final double COORDINATE_FACTOR = 1e7;
+
+    private final LocationProperties.Store config;
+
+    private final ConcurrentMap<String, DeviceLog> logs = new ConcurrentHashMap<>();
+
+    private Path dir;
+
+    private ScheduledExecutorService flusher;
+
+    public MappedTrajectoryStore(LocationProperties locationProperties) {
+        this.config = locationProperties.getStore();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        dir = Paths.get(config.getDir());
+        Files.createDirectories(dir);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "trajectory-log-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, config.getForceIntervalMs());
+        flusher.scheduleWithFixedDelay(this::forceAll, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("历史轨迹使用内存映射文件存储 - 目录: {}", dir.toAbsolutePath());
+    }
+
+    @Override
+    public int append(List<LocationPoint> points) {
+        if (points.isEmpty()) {
+            return 0;
+        }
+        // 按设备分组，保持组内顺序
+        Map<String, List<LocationPoint>> byDevice = new LinkedHashMap<>();
+        for (LocationPoint point : points) {
+            byDevice.computeIfAbsent(point.getDeviceId(), k -> new ArrayList<>()).add(point);
+        }
+        for (Map.Entry<String, List<LocationPoint>> entry : byDevice.entrySet()) {
+            logOf(entry.getKey(), true).append(entry.getValue());
+        }
+        return points.size();
+    }
+
+    @Override
+    public void scan(String deviceId, LocalDateTime start, LocalDateTime end, Predicate<LocationData> visitor) {
+        DeviceLog deviceLog = logOf(deviceId, false);
+        if (deviceLog != null) {
+            deviceLog.scan(start == null ? Long.MIN_VALUE : toMillis(start),
+                    end == null ? Long.MAX_VALUE : toMillis(end), visitor);
+        }
+    }
+
+    @Override
+    public List<LocationData> page(String deviceId, LocalDateTime start, LocalDateTime end,
+                                   LocalDateTime afterTime, Long afterId, int limit) {
+        List<LocationData> rows = new ArrayList<>(limit);
+        scan(deviceId, afterTime != null ? afterTime : start, end, row -> {
+            // 同一设备的记录 ID 随记录时间递增
+            if (afterId == null || row.getId() > afterId) {
+                rows.add(row);
+            }
+            return rows.size() < limit;
+        });
+        return rows;
+    }
+
+    @Override
+    public LocationData latest(String deviceId) {
+        DeviceLog deviceLog = logOf(deviceId, false);
+        return deviceLog == null ? null : deviceLog.last();
+    }
+
+    /**
+     * 打开设备的记录文件，create 为 false 且文件不存在时返回 null
+     */
+    private DeviceLog logOf(String deviceId, boolean create) {
+        DeviceLog deviceLog = logs.get(deviceId);
+        if (deviceLog != null) {
+            return deviceLog;
+        }
+        Path path = dir.resolve(LocationArchive.fileName(deviceId) + LOG_SUFFIX);
+        if (!create && !Files.exists(path)) {
+            return null;
+        }
+        try {
+            return logs.computeIfAbsent(deviceId, k -> {
+                try {
+                    return new DeviceLog(deviceId, path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.error("打开轨迹文件失败 - deviceId: {}", deviceId, e.getCause());
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "打开轨迹文件失败");
+        }
+    }
+
+    private void forceAll() {
+        for (DeviceLog deviceLog : logs.values()) {
+            try {
+                deviceLog.force();
+            } catch (Exception e) {
+                log.error("轨迹文件刷盘失败 - deviceId: {}", deviceLog.deviceId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        forceAll();
+        for (DeviceLog deviceLog : logs.values()) {
+            try {
+                deviceLog.channel.close();
+            } catch (IOException e) {
+                log.warn("关闭轨迹文件失败 - deviceId: {}", deviceLog.deviceId, e);
+            }
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 单台设备的记录文件：写入串行，读取不加锁
+     * 写入先写记录和索引项，最后更新记录数，读取只访问记录数以内的部分
+     */
+    private final class DeviceLog {
+
+        private final String deviceId;
+        private final FileChannel channel;
+        private final int indexInterval = Math.max(1, config.getIndexInterval());
+
+        private volatile MappedByteBuffer mapped;
+        /**
+         * 第 k 项为第 k * indexInterval 条记录的记录时间
+         */
+        private volatile long[] sparseIndex;
+        private volatile int count;
+
+        private long lastCreateTime = Long.MIN_VALUE;
+        private boolean dirty;
+
+        DeviceLog(String deviceId, Path path) throws IOException {
+            this.deviceId = deviceId;
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_BYTES) {
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityFor(growRecords()));
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, RECORD_BYTES);
+                mapped.putLong(COUNT_OFFSET, 0);
+                sparseIndex = new long[16];
+                return;
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != RECORD_BYTES) {
+                throw new IOException("轨迹文件格式不正确: " + path);
+            }
+            int n = (int) mapped.getLong(COUNT_OFFSET);
+            long[] index = new long[Math.max(16, n / indexInterval + 1)];
+            for (int k = 0; k * indexInterval < n; k++) {
+                index[k] = createTime(mapped, k * indexInterval);
+            }
+            sparseIndex = index;
+            if (n > 0) {
+                lastCreateTime = createTime(mapped, n - 1);
+            }
+            count = n;
+        }
+
+        synchronized void append(List<LocationPoint> points) {
+            ensureCapacity(count + points.size());
+            MappedByteBuffer buffer = mapped;
+            long[] index = sparseIndex;
+            int n = count;
+            for (LocationPoint point : points) {
+                // 同一设备的记录时间不回退，保证可以按时间二分
+                long createTime = Math.max(point.getCreateTime(), lastCreateTime);
+                int position = HEADER_BYTES + n * RECORD_BYTES;
+                buffer.putLong(position, createTime);
+                buffer.putLong(position + 8, point.getTimestamp());
+                buffer.putLong(position + 16, point.getGuardianId() == null ? 0 : point.getGuardianId());
+                buffer.putInt(position + 24, (int) Math.round(point.getLatitude() * COORDINATE_FACTOR));
+                buffer.putInt(position + 28, (int) Math.round(point.getLongitude() * COORDINATE_FACTOR));
+                buffer.putInt(position + 32, point.hasAccuracy()
+                        ? (int) Math.min(Integer.MAX_VALUE, Math.max(0, Math.round(point.getAccuracy() * 100))) : -1);
+                if (n % indexInterval == 0) {
+                    int k = n / indexInterval;
+                    if (k == index.length) {
+                        index = Arrays.copyOf(index, k + (k >> 1));
+                    }
+                    index[k] = createTime;
+                }
+                lastCreateTime = createTime;
+                n++;
+            }
+            sparseIndex = index;
+            buffer.putLong(COUNT_OFFSET, n);
+            count = n;
+            dirty = true;
+        }
+
+        void scan(long startMs, long endMs, Predicate<LocationData> visitor) {
+            int n = count;
+            long[] index = sparseIndex;
+            MappedByteBuffer buffer = mapped;
+            for (int i = firstCandidate(index, n, startMs); i < n; i++) {
+                long createTime = createTime(buffer, i);
+                if (createTime < startMs) {
+                    continue;
+                }
+                if (createTime > endMs || !visitor.test(read(buffer, i))) {
+                    return;
+                }
+            }
+        }
+
+        LocationData last() {
+            int n = count;
+            return n == 0 ? null : read(mapped, n - 1);
+        }
+
+        void force() {
+            MappedByteBuffer buffer;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                dirty = false;
+                buffer = mapped;
+            }
+            buffer.force();
+        }
+
+        /**
+         * 最后一个记录时间早于 startMs 的索引项所在的记录，从这里开始顺序扫描
+         */
+        private int firstCandidate(long[] index, int n, long startMs) {
+            int low = 0;
+            int high = (n + indexInterval - 1) / indexInterval - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (index[mid] < startMs) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : found * indexInterval;
+        }
+
+        private void ensureCapacity(int records) {
+            long required = capacityFor(records);
+            if (required <= mapped.capacity()) {
+                return;
+            }
+            long size = Math.max(required, mapped.capacity() + (long) growRecords() * RECORD_BYTES);
+            if (size > Integer.MAX_VALUE) {
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "轨迹文件已满");
+            }
+            try {
+                // 映射超出文件长度的区域时文件自动扩展，旧映射仍可被正在读取的线程使用
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                log.error("扩展轨迹文件失败 - deviceId: {}", deviceId, e);
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "扩展轨迹文件失败");
+            }
+        }
+
+        private int growRecords() {
+            return Math.max(1, config.getGrowRecords());
+        }
+
+        private long capacityFor(int records) {
+            return HEADER_BYTES + (long) records * RECORD_BYTES;
+        }
+
+        private long createTime(MappedByteBuffer buffer, int i) {
+            return buffer.getLong(HEADER_BYTES + i * RECORD_BYTES);
+        }
+
+        private LocationData read(MappedByteBuffer buffer, int i) {
+            int position = HEADER_BYTES + i * RECORD_BYTES;
+            long timestamp = buffer.getLong(position + 8);
+            long guardianId = buffer.getLong(position + 16);
+            int accuracy = buffer.getInt(position + 32);
+            LocationData location = new LocationData();
+            location.setId((long) i + 1);
+            location.setDevice_id(deviceId);
+            location.setLatitude(BigDecimal.valueOf(buffer.getInt(position + 24), COORDINATE_SCALE));
+            location.setLongitude(BigDecimal.valueOf(buffer.getInt(position + 28), COORDINATE_SCALE));
+            location.setAccuracy(accuracy < 0 ? null : BigDecimal.valueOf(accuracy, 2));
+            location.setTimestamp(timestamp > 0 ? new Date(timestamp) : null);
+            location.setGuardian_id(guardianId == 0 ? null : guardianId);
+            location.setCreate_time(LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(buffer.getLong(position)), ZoneId.systemDefault()));
+            return location;
+        }
+    }
+}
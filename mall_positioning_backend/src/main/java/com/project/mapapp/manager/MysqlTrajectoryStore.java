@@ -0,0 +1,119 @@
+package com.project.mapapp.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.mapper.LocationDataMapper;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * location_data 表存储：写入按月分表，已归档的日期从段文件读取，其余查数据库
+ *
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "location.store", name = "type", havingValue = "mysql", matchIfMissing = true)
+public class MysqlTrajectoryStore implements TrajectoryStore {
+
+    private final LocationDataMapper locationDataMapper;
+    private final LocationPartitionRouter locationPartitionRouter;
+    private final LocationArchive locationArchive;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public int append(List<LocationPoint> points) {
+        return locationPartitionRouter.insertBatch(points);
+    }
+
+    @Override
+    public void scan(String deviceId, LocalDateTime start, LocalDateTime end, Predicate<LocationData> visitor) {
+        boolean[] stopped = {false};
+        locationArchive.scan(deviceId, start, end, location -> {
+            stopped[0] = !visitor.test(location);
+            return !stopped[0];
+        });
+        if (stopped[0] || !locationArchive.needsHot(start, end)) {
+            return;
+        }
+        LocalDateTime hotStart = locationArchive.hotStart(start);
+        // 游标需要在事务内消费，分表时按月份先后逐表读取
+        transactionTemplate.execute(status -> {
+            for (String table : locationPartitionRouter.tablesFor(hotStart, end)) {
+                try (Cursor<LocationData> cursor = locationPartitionRouter.withTable(table,
+                        () -> locationDataMapper.streamHistory(deviceId, hotStart, end))) {
+                    for (LocationData location : cursor) {
+                        if (!visitor.test(location)) {
+                            return null;
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取历史轨迹失败");
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<LocationData> page(String deviceId, LocalDateTime start, LocalDateTime end,
+                                   LocalDateTime afterTime, Long afterId, int limit) {
+        // 先读已归档的日期，再从游标所在月份起逐表补足
+        List<LocationData> rows = new ArrayList<>(limit);
+        LocalDateTime from = afterTime != null ? afterTime : start;
+        locationArchive.scan(deviceId, from, end, row -> {
+            if (isAfter(row, afterTime, afterId)) {
+                rows.add(row);
+            }
+            return rows.size() < limit;
+        });
+        if (rows.size() >= limit || !locationArchive.needsHot(from, end)) {
+            return rows;
+        }
+        LocalDateTime hotStart = locationArchive.hotStart(start);
+        for (String table : locationPartitionRouter.tablesFor(locationArchive.hotStart(from), end)) {
+            int remaining = limit - rows.size();
+            rows.addAll(locationPartitionRouter.withTable(table, () -> locationDataMapper.selectHistoryPage(
+                    deviceId, hotStart, end, afterTime, afterId, remaining)));
+            if (rows.size() >= limit) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public LocationData latest(String deviceId) {
+        QueryWrapper<LocationData> query = new QueryWrapper<>();
+        query.eq("device_id", deviceId)
+                .orderByDesc("`timestamp`", "create_time")
+                .last("LIMIT 1");
+        // 分表时从最近的月份往前找，找到即停
+        List<String> tables = locationPartitionRouter.tablesFor(null, null);
+        LocationData location = null;
+        for (int i = tables.size() - 1; i >= 0 && location == null; i--) {
+            location = locationPartitionRouter.withTable(tables.get(i), () -> locationDataMapper.selectOne(query));
+        }
+        if (location == null) {
+            // 近期没有上报的设备，数据可能已全部归档
+            location = locationArchive.latest(deviceId);
+        }
+        return location;
+    }
+
+    private static boolean isAfter(LocationData row, LocalDateTime afterTime, Long afterId) {
+        return afterTime == null || row.getCreate_time().isAfter(afterTime)
+                || (row.getCreate_time().isEqual(afterTime) && row.getId() > afterId);
+    }
+}
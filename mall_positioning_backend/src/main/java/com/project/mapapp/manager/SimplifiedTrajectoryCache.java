@@ -0,0 +1,75 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.utils.TrajectoryBuffer;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 抽稀后的历史轨迹缓存，按（设备、时间范围、容差或缩放级别）缓存，缓存的轨迹不再修改；只缓存结束时间已过去的区间
+ * 写缓冲、溢写回放、消息队列积压和设备补传都会写入记录时间已过去的点，写入成功后如果点不晚于该设备已缓存区间的
+ * 最大结束时间，递增设备的版本号，旧版本的缓存不再命中，由 LRU 淘汰；实时上报的点晚于所有已缓存区间，不影响缓存
+ *
+ */
+@Component
+public class SimplifiedTrajectoryCache implements TrajectoryAppendListener {
+
+    private final LRUCache<String, TrajectoryBuffer> cache;
+
+    /**
+     * 设备ID -> 版本号，缓存键带版本号
+     */
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 设备ID -> 已缓存（或正在加载）区间的最大结束时间（毫秒）
+     */
+    private final ConcurrentMap<String, Long> cachedUntil = new ConcurrentHashMap<>();
+
+    public SimplifiedTrajectoryCache(LocationProperties locationProperties) {
+        this.cache = CacheUtil.newLRUCache(Math.max(1, locationProperties.getHistory().getSimplifyCacheSize()));
+    }
+
+    /**
+     * 缓存键，区间未结束时返回 null 表示不缓存；必须在读取存储之前获取，加载期间写入的旧点会使这个键失效
+     */
+    public String key(String deviceId, LocalDateTime start, LocalDateTime end, String level) {
+        if (end == null || !end.isBefore(LocalDateTime.now())) {
+            return null;
+        }
+        long endMs = end.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        cachedUntil.merge(deviceId, endMs, Math::max);
+        return deviceId + "|" + versions.getOrDefault(deviceId, 0L) + "|" + start + "|" + end + "|" + level;
+    }
+
+    public TrajectoryBuffer get(String key) {
+        return key == null ? null : cache.get(key, false);
+    }
+
+    public void put(String key, TrajectoryBuffer trajectory) {
+        if (key != null) {
+            cache.put(key, trajectory);
+        }
+    }
+
+    /**
+     * 写入（事务已提交）的点落在已缓存的区间内时使该设备的缓存失效
+     */
+    @Override
+    public void onAppended(List<LocationPoint> points) {
+        for (LocationPoint point : points) {
+            Long until = cachedUntil.get(point.getDeviceId());
+            if (until != null && point.getCreateTime() <= until) {
+                versions.merge(point.getDeviceId(), 1L, Long::sum);
+            }
+        }
+    }
+}
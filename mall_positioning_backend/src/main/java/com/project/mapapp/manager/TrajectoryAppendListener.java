@@ -0,0 +1,17 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.dto.location.LocationPoint;
+
+import java.util.List;
+
+/**
+ * 上报链路写入存储成功后的回调，由 TrajectoryAppendNotifier 统一派发
+ *
+ */
+public interface TrajectoryAppendListener {
+
+    /**
+     * 处理新写入的点；同一设备的点按写入顺序到达，不同设备之间可能并发调用
+     */
+    void onAppended(List<LocationPoint> points);
+}
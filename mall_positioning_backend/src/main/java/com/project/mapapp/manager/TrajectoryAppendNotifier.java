@@ -0,0 +1,53 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.dto.location.LocationPoint;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 上报链路写入存储后通知各监听方（历史日缓存、停留点检测）
+ * 在事务内时等事务提交后再通知，避免处理回滚的数据；单个监听方失败不影响其他监听方和上报本身
+ *
+ */
+@Slf4j
+@Component
+public class TrajectoryAppendNotifier {
+
+    private final List<TrajectoryAppendListener> listeners;
+
+    public TrajectoryAppendNotifier(List<TrajectoryAppendListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    public void appended(List<LocationPoint> points) {
+        if (points.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<LocationPoint> committed = new ArrayList<>(points);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(committed);
+                }
+            });
+            return;
+        }
+        dispatch(points);
+    }
+
+    private void dispatch(List<LocationPoint> points) {
+        for (TrajectoryAppendListener listener : listeners) {
+            try {
+                listener.onAppended(points);
+            } catch (Exception e) {
+                log.error("处理新写入的位置失败: {}", listener.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 历史轨迹存储：上报链路只追加，历史查询按设备和记录时间范围顺序读取
+ * 由 location.store.type 选择实现
+ *
+ */
+public interface TrajectoryStore {
+
+    /**
+     * 追加一批定位点
+     *
+     * @return 写入条数
+     */
+    int append(List<LocationPoint> points);
+
+    /**
+     * 按（记录时间, ID）顺序读取设备的轨迹，visitor 返回 false 时停止
+     *
+     * @param start 为空表示不限开始时间
+     * @param end   为空表示不限结束时间
+     */
+    void scan(String deviceId, LocalDateTime start, LocalDateTime end, Predicate<LocationData> visitor);
+
+    /**
+     * 键集分页：读取（记录时间, ID）在游标之后的最多 limit 条
+     *
+     * @param afterTime 游标记录时间，为空表示第一页
+     */
+    List<LocationData> page(String deviceId, LocalDateTime start, LocalDateTime end,
+                            LocalDateTime afterTime, Long afterId, int limit);
+
+    /**
+     * 设备最新的一条记录，没有时返回 null
+     */
+    LocationData latest(String deviceId);
+}
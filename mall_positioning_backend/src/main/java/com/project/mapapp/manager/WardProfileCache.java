@@ -0,0 +1,116 @@
+package com.project.mapapp.manager;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import com.project.mapapp.mapper.DeviceMapper;
+import com.project.mapapp.mapper.UserMapper;
+import com.project.mapapp.mapper.WardMapper;
+import com.project.mapapp.model.entity.Device;
+import com.project.mapapp.model.entity.User;
+import com.project.mapapp.model.entity.Ward;
+import com.project.mapapp.model.vo.WardLocationVO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 被监护人设备资料缓存（设备、被监护人信息、姓名），未命中的设备一次批量回源
+ * 设备信息修改时主动失效，其余资料依赖过期时间
+ *
+ */
+@Component
+public class WardProfileCache {
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final DeviceMapper deviceMapper;
+    private final WardMapper wardMapper;
+    private final UserMapper userMapper;
+
+    /**
+     * 设备ID -> 资料（location 字段为空）
+     */
+    private final TimedCache<String, WardLocationVO> profiles = CacheUtil.newTimedCache(TTL_MILLIS);
+
+    public WardProfileCache(DeviceMapper deviceMapper, WardMapper wardMapper, UserMapper userMapper) {
+        this.deviceMapper = deviceMapper;
+        this.wardMapper = wardMapper;
+        this.userMapper = userMapper;
+        this.profiles.schedulePrune(TTL_MILLIS);
+    }
+
+    /**
+     * 批量获取设备资料，按传入顺序返回，已删除的设备不出现在结果中
+     */
+    public Map<String, WardLocationVO> getAll(Collection<String> deviceIds) {
+        Map<String, WardLocationVO> result = new LinkedHashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            WardLocationVO profile = profiles.get(deviceId, false);
+            if (profile == null) {
+                misses.add(deviceId);
+            }
+            result.put(deviceId, profile);
+        }
+        if (!misses.isEmpty()) {
+            Map<String, WardLocationVO> loaded = load(misses);
+            loaded.forEach(profiles::put);
+            result.putAll(loaded);
+        }
+        result.values().removeIf(Objects::isNull);
+        return result;
+    }
+
+    public void invalidate(String deviceId) {
+        if (deviceId != null) {
+            profiles.remove(deviceId);
+        }
+    }
+
+    private Map<String, WardLocationVO> load(List<String> deviceIds) {
+        List<Device> devices = deviceMapper.selectBatchIds(deviceIds);
+        List<Long> wardIds = devices.stream()
+                .map(Device::getUser_id)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Ward> wards = new HashMap<>();
+        Map<Long, User> users = new HashMap<>();
+        if (!wardIds.isEmpty()) {
+            wards = wardMapper.selectBatchIds(wardIds).stream()
+                    .collect(Collectors.toMap(Ward::getId, Function.identity()));
+            users = userMapper.selectBatchIds(wardIds).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+        }
+
+        Map<String, WardLocationVO> loaded = new HashMap<>();
+        for (Device device : devices) {
+            WardLocationVO profile = new WardLocationVO();
+            profile.setDeviceId(device.getId());
+            profile.setDeviceName(device.getName());
+            profile.setDeviceDescription(device.getDevice_description());
+            profile.setWardId(device.getUser_id());
+            Ward ward = wards.get(device.getUser_id());
+            if (ward != null) {
+                profile.setUserAge(ward.getUserAge());
+                profile.setEmergencyContact(ward.getEmergencyContact());
+                profile.setRelationship(ward.getRelationship());
+            }
+            User user = users.get(device.getUser_id());
+            if (user != null) {
+                profile.setWardName(user.getUserName());
+            }
+            loaded.put(device.getId(), profile);
+        }
+        return loaded;
+    }
+}
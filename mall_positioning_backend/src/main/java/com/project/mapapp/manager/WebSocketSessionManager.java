@@ -105,6 +105,11 @@ public class WebSocketSessionManager {
         return deviceSessions.get(deviceId);
     }
 
+    public void removeDeviceSession(String deviceId, WebSocketSession session) {
+        if (deviceId == null || session == null) return;
+        deviceSessions.remove(deviceId, session);
+    }
+
     public void addGuardianSession(Long guardianId, WebSocketSession session) {
         guardianSessions.put(guardianId, session);
     }
@@ -1,7 +1,11 @@
 package com.project.mapapp.mapper;
 
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
 import com.project.mapapp.model.entity.Alert;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 /**
 * @author jjw
@@ -11,6 +15,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface AlertMapper extends BaseMapper<Alert> {
 
+    /**
+     * 按条件流式读取警报（带设备名称），必须在事务内消费完并关闭；消费期间不能在同一连接上执行其他查询
+     */
+    Cursor<Alert> streamAlerts(@Param(Constants.WRAPPER) Wrapper<Alert> wrapper);
 }
 
 
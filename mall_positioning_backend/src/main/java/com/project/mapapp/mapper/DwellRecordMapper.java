@@ -0,0 +1,12 @@
+package com.project.mapapp.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.project.mapapp.model.entity.DwellRecord;
+
+/**
+ * 针对表【dwell_record(停留记录表)】的数据库操作Mapper
+ * @Entity com.project.mapapp.model.entity.DwellRecord
+ */
+public interface DwellRecordMapper extends BaseMapper<DwellRecord> {
+
+}
@@ -1,7 +1,14 @@
 package com.project.mapapp.mapper;
 
+import com.project.mapapp.model.dto.location.LocationPoint;
 import com.project.mapapp.model.entity.LocationData;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
 * @author jjw
@@ -11,6 +18,64 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface LocationDataMapper extends BaseMapper<LocationData> {
 
+    /**
+     * 多行插入位置数据
+     */
+    int insertBatch(@Param("list") List<LocationPoint> list);
+
+    /**
+     * 按记录时间升序流式读取设备轨迹，必须在事务内消费完并关闭
+     */
+    Cursor<LocationData> streamHistory(@Param("deviceId") String deviceId,
+                                       @Param("start") LocalDateTime start,
+                                       @Param("end") LocalDateTime end);
+
+    /**
+     * 游标分页查询设备轨迹：取 (create_time, id) 严格大于游标位置的前 limit 行，首页游标为空
+     */
+    List<LocationData> selectHistoryPage(@Param("deviceId") String deviceId,
+                                         @Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("afterTime") LocalDateTime afterTime,
+                                         @Param("afterId") Long afterId,
+                                         @Param("limit") int limit);
+
+    /**
+     * 最早的记录时间
+     */
+    LocalDateTime selectMinCreateTime();
+
+    /**
+     * 时间段 [from, to) 内有数据的设备
+     */
+    List<String> listDeviceIdsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 流式读取设备在 [from, to) 内的轨迹，必须在事务内消费完并关闭
+     */
+    Cursor<LocationData> streamDeviceBetween(@Param("deviceId") String deviceId,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
+
+    /**
+     * 设备在 [from, to) 内有数据的日期
+     */
+    List<LocalDate> listDaysBetween(@Param("deviceId") String deviceId,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+
+    /**
+     * 当前库中已有的位置月表名
+     */
+    List<String> listPartitionTables();
+
+    /**
+     * 以 location_data 为模板创建月表
+     */
+    int createPartition(@Param("table") String table);
+
+    int dropPartition(@Param("table") String table);
+
 }
 
 
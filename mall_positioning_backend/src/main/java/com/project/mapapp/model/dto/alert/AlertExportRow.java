@@ -0,0 +1,89 @@
+package com.project.mapapp.model.dto.alert;
+
+import com.alibaba.excel.annotation.ExcelIgnoreUnannotated;
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.annotation.write.style.ColumnWidth;
+import com.project.mapapp.model.entity.Alert;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 警报导出的一行
+ */
+@Data
+@ExcelIgnoreUnannotated
+public class AlertExportRow {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @ExcelProperty(value = "警报ID", index = 0)
+    @ColumnWidth(10)
+    private Long id;
+
+    @ExcelProperty(value = "设备ID", index = 1)
+    @ColumnWidth(20)
+    private String deviceId;
+
+    @ExcelProperty(value = "设备名称", index = 2)
+    @ColumnWidth(16)
+    private String deviceName;
+
+    @ExcelProperty(value = "类型", index = 3)
+    @ColumnWidth(12)
+    private String type;
+
+    @ExcelProperty(value = "级别", index = 4)
+    @ColumnWidth(8)
+    private String level;
+
+    @ExcelProperty(value = "状态", index = 5)
+    @ColumnWidth(10)
+    private String status;
+
+    @ExcelProperty(value = "内容", index = 6)
+    @ColumnWidth(40)
+    private String message;
+
+    @ExcelProperty(value = "纬度", index = 7)
+    @ColumnWidth(14)
+    private Double latitude;
+
+    @ExcelProperty(value = "经度", index = 8)
+    @ColumnWidth(14)
+    private Double longitude;
+
+    @ExcelProperty(value = "地址", index = 9)
+    @ColumnWidth(30)
+    private String address;
+
+    @ExcelProperty(value = "触发时间", index = 10)
+    @ColumnWidth(20)
+    private String triggeredAt;
+
+    @ExcelProperty(value = "处理时间", index = 11)
+    @ColumnWidth(20)
+    private String resolvedAt;
+
+    public static AlertExportRow from(Alert alert) {
+        AlertExportRow row = new AlertExportRow();
+        row.setId(alert.getId());
+        row.setDeviceId(alert.getDevice_id());
+        row.setDeviceName(alert.getDeviceName() != null ? alert.getDeviceName() : "");
+        row.setType(alert.getType() != null ? alert.getType().getText() : null);
+        row.setLevel(alert.getLevel() != null ? alert.getLevel().getText() : null);
+        row.setStatus(alert.getStatus() != null ? alert.getStatus().getText() : null);
+        row.setMessage(alert.getMessage());
+        row.setLatitude(alert.getLatitude() != null ? alert.getLatitude().doubleValue() : null);
+        row.setLongitude(alert.getLongitude() != null ? alert.getLongitude().doubleValue() : null);
+        row.setAddress(alert.getAddress());
+        row.setTriggeredAt(format(alert.getTriggeredAt()));
+        row.setResolvedAt(format(alert.getResolvedAt()));
+        return row;
+    }
+
+    private static String format(LocalDateTime time) {
+        return time != null ? time.format(TIME_FORMATTER) : null;
+    }
+}
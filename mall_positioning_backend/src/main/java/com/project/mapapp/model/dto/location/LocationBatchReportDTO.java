@@ -0,0 +1,24 @@
+package com.project.mapapp.model.dto.location;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量位置上报DTO（设备断网重连后补传缓存的定位点）
+ */
+@Data
+public class LocationBatchReportDTO {
+    private Long wardId;
+
+    /**
+     * 按采集先后顺序排列，最后一个为最新位置
+     */
+    @Valid
+    @NotEmpty(message = "位置列表不能为空")
+    @Size(max = 5000, message = "单次最多上报5000个位置")
+    private List<LocationReportDTO> locations;
+}
@@ -0,0 +1,58 @@
+package com.project.mapapp.model.dto.location;
+
+import com.alibaba.excel.annotation.ExcelIgnoreUnannotated;
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.annotation.write.style.ColumnWidth;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 历史轨迹导出的一行
+ */
+@Data
+@ExcelIgnoreUnannotated
+public class LocationExportRow {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @ExcelProperty(value = "设备ID", index = 0)
+    @ColumnWidth(20)
+    private String deviceId;
+
+    @ExcelProperty(value = "纬度", index = 1)
+    @ColumnWidth(14)
+    private Double latitude;
+
+    @ExcelProperty(value = "经度", index = 2)
+    @ColumnWidth(14)
+    private Double longitude;
+
+    @ExcelProperty(value = "精度(米)", index = 3)
+    @ColumnWidth(10)
+    private Double accuracy;
+
+    @ExcelProperty(value = "定位时间", index = 4)
+    @ColumnWidth(20)
+    private String timestamp;
+
+    @ExcelProperty(value = "记录时间", index = 5)
+    @ColumnWidth(20)
+    private String createTime;
+
+    public static LocationExportRow from(LocationData location) {
+        LocationExportRow row = new LocationExportRow();
+        row.setDeviceId(location.getDevice_id());
+        row.setLatitude(location.getLatitude().doubleValue());
+        row.setLongitude(location.getLongitude().doubleValue());
+        row.setAccuracy(location.getAccuracy() != null ? location.getAccuracy().doubleValue() : null);
+        row.setTimestamp(location.getTimestamp() != null
+                ? LocalDateTime.ofInstant(location.getTimestamp().toInstant(), ZoneId.systemDefault()).format(TIME_FORMATTER)
+                : null);
+        row.setCreateTime(location.getCreate_time().format(TIME_FORMATTER));
+        return row;
+    }
+}
@@ -0,0 +1,30 @@
+package com.project.mapapp.model.dto.location;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 异步上报模式下投递到 location_queue 的位置消息
+ */
+@Data
+public class LocationMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String deviceId;
+    private Long guardianId;
+    private double latitude;
+    private double longitude;
+    private Double accuracy;
+
+    /**
+     * 客户端定位时间(毫秒)，未上报时为 null
+     */
+    private Long timestamp;
+
+    /**
+     * 服务端接收时间(毫秒)，消费端以此作为 create_time
+     */
+    private long receivedAt;
+}
@@ -0,0 +1,82 @@
+package com.project.mapapp.model.dto.location;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * 上报链路内部使用的定位点，坐标和时间均为基本类型
+ * 只在 MyBatis 写库边界转换为包装类型
+ */
+@Data
+public class LocationPoint {
+    private String deviceId;
+    private Long guardianId;
+    private double latitude;
+    private double longitude;
+
+    /**
+     * 定位精度(米)，未知时为 NaN
+     */
+    private double accuracy = Double.NaN;
+
+    /**
+     * 设备端定位时间(毫秒)，写入 location_data.timestamp；未上报时由 LocationOrderGuard 补为服务端接收时间
+     */
+    private long timestamp;
+
+    /**
+     * 服务端接收时间(毫秒)
+     */
+    private long createTime;
+
+    /**
+     * 需要推送的监护人，由流水线路由阶段填充，不落盘
+     */
+    @JsonIgnore
+    private Set<Long> guardianIds = Collections.emptySet();
+
+    /**
+     * 只写入历史，不推送、不校验围栏（批量补传中的非最新点）
+     */
+    @JsonIgnore
+    private boolean persistOnly;
+
+    public boolean hasAccuracy() {
+        return !Double.isNaN(accuracy);
+    }
+
+    @JsonIgnore
+    public Double getAccuracyOrNull() {
+        return hasAccuracy() ? accuracy : null;
+    }
+
+    @JsonIgnore
+    public Date getTimestampDate() {
+        return timestamp > 0 ? new Date(timestamp) : null;
+    }
+
+    @JsonIgnore
+    public Date getCreateTimeDate() {
+        return new Date(createTime);
+    }
+
+    public static LocationPoint of(String deviceId, Long guardianId, LocationReportDTO report, long now) {
+        LocationPoint point = new LocationPoint();
+        point.setDeviceId(deviceId);
+        point.setGuardianId(guardianId);
+        point.setLatitude(report.getLatitude());
+        point.setLongitude(report.getLongitude());
+        if (report.getAccuracy() != null) {
+            point.setAccuracy(report.getAccuracy());
+        }
+        if (report.getCreateTime() != null) {
+            point.setTimestamp(report.getCreateTime().getTime());
+        }
+        point.setCreateTime(now);
+        return point;
+    }
+}
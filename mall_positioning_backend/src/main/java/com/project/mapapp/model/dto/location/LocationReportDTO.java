@@ -3,7 +3,6 @@ package com.project.mapapp.model.dto.location;
 import lombok.Data;
 
 import javax.validation.constraints.*;
-import java.math.BigDecimal;
 import java.util.Date;
 
 /**
@@ -17,14 +16,23 @@ public class LocationReportDTO {
     @NotNull(message = "纬度不能为空")
     @DecimalMin(value = "-90.0", message = "纬度最小为-90")
     @DecimalMax(value = "90.0", message = "纬度最大为90")
-    private BigDecimal latitude;
+    private Double latitude;
 
     @NotNull(message = "经度不能为空")
     @DecimalMin(value = "-180.0", message = "经度最小为-180")
     @DecimalMax(value = "180.0", message = "经度最大为180")
-    private BigDecimal longitude;
+    private Double longitude;
 
     @DecimalMin(value = "0.0", message = "精度不能为负")
-    private BigDecimal accuracy;
+    private Double accuracy;
+
+    /**
+     * 客户端定位时间，未携带序号时用于识别重复上报
+     */
     private Date createTime;
+
+    /**
+     * 设备端递增序号，用于识别重试/重放的重复上报，WebSocket 上行时用于回执
+     */
+    private Long seq;
 }
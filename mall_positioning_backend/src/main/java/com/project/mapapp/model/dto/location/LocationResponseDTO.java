@@ -1,21 +1,59 @@
 package com.project.mapapp.model.dto.location;
 
 
+import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.utils.TrajectoryBuffer;
 import lombok.Data;
 
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
  * 位置响应DTO
  */
 @Data
 public class LocationResponseDTO {
-    private BigDecimal latitude;
-    private BigDecimal longitude;
-    private BigDecimal accuracy;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private double latitude;
+    private double longitude;
+    private Double accuracy;
     private String createTime;
     private String deviceId;
 
+    public static LocationResponseDTO from(LocationPoint point) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setLatitude(point.getLatitude());
+        dto.setLongitude(point.getLongitude());
+        dto.setAccuracy(point.getAccuracyOrNull());
+        dto.setDeviceId(point.getDeviceId());
+        dto.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(point.getCreateTime()), ZoneId.systemDefault())
+                .format(TIME_FORMATTER));
+        return dto;
+    }
+
+    public static LocationResponseDTO from(LocationData location) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setDeviceId(location.getDevice_id());
+        dto.setLongitude(location.getLongitude().doubleValue());
+        dto.setLatitude(location.getLatitude().doubleValue());
+        dto.setAccuracy(location.getAccuracy() != null ? location.getAccuracy().doubleValue() : null);
+        dto.setCreateTime(location.getCreate_time().format(TIME_FORMATTER));
+        return dto;
+    }
 
+    public static LocationResponseDTO from(String deviceId, TrajectoryBuffer trajectory, int index) {
+        LocationResponseDTO dto = new LocationResponseDTO();
+        dto.setDeviceId(deviceId);
+        dto.setLatitude(trajectory.latitude(index));
+        dto.setLongitude(trajectory.longitude(index));
+        double accuracy = trajectory.accuracy(index);
+        dto.setAccuracy(Double.isNaN(accuracy) ? null : accuracy);
+        dto.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(trajectory.time(index)), ZoneId.systemDefault())
+                .format(TIME_FORMATTER));
+        return dto;
+    }
 }
@@ -25,6 +25,11 @@ public class Device {
      */
     private String name;
 
+    /**
+     * 设备类型（elder 老人 / child 儿童），见 DeviceTypeEnum
+     */
+    private String type;
+
     /**
      * 绑定的用户人ID
      */
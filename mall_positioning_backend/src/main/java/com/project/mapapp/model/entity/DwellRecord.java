@@ -0,0 +1,67 @@
+package com.project.mapapp.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import lombok.Data;
+
+/**
+ * 停留记录表：一次停留只存起止时间、质心和所在区域，代替停留期间的全部轨迹点
+ * @TableName dwell_record
+ */
+@TableName(value ="dwell_record")
+@Data
+public class DwellRecord {
+    /**
+     * 停留记录ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 设备ID
+     */
+    private String device_id;
+
+    /**
+     * 开始时间（停留内第一个点的记录时间）
+     */
+    private LocalDateTime start_time;
+
+    /**
+     * 结束时间（停留内最后一个点的记录时间）
+     */
+    private LocalDateTime end_time;
+
+    /**
+     * 持续时间（秒）
+     */
+    private Integer duration_seconds;
+
+    /**
+     * 质心纬度
+     */
+    private BigDecimal latitude;
+
+    /**
+     * 质心经度
+     */
+    private BigDecimal longitude;
+
+    /**
+     * 停留期间的轨迹点数
+     */
+    private Integer point_count;
+
+    /**
+     * 质心所在的商场区域ID，不在任何区域内时为空
+     */
+    private Long mall_area_id;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime create_time;
+}
@@ -0,0 +1,21 @@
+package com.project.mapapp.model.enums;
+
+/**
+ * 导出文件格式
+ */
+public enum ExportFormat {
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    CSV("csv", "text/csv");
+
+    private final String extension;
+    private final String contentType;
+
+    ExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    // Getters
+    public String getExtension() { return extension; }
+    public String getContentType() { return contentType; }
+}
@@ -0,0 +1,21 @@
+package com.project.mapapp.model.enums;
+
+/**
+ * 设备在线状态枚举
+ */
+public enum PresenceStatus {
+    ONLINE("ONLINE", "在线"),
+    OFFLINE("OFFLINE", "离线");
+
+    private final String code;
+    private final String text;
+
+    PresenceStatus(String code, String text) {
+        this.code = code;
+        this.text = text;
+    }
+
+    // Getters
+    public String getCode() { return code; }
+    public String getText() { return text; }
+}
@@ -0,0 +1,22 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.enums.PresenceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 设备在线状态，用于批量查询和 PRESENCE 推送
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DevicePresenceVO {
+    private String deviceId;
+    private PresenceStatus status;
+
+    /**
+     * 最后活跃时间，服务启动后从未上报的设备为 null
+     */
+    private String lastSeen;
+}
@@ -0,0 +1,34 @@
+package com.project.mapapp.model.vo;
+
+import lombok.Data;
+
+/**
+ * 停留记录，客户端按停留展示一段时间内的活动，不再拉取全部轨迹点
+ */
+@Data
+public class DwellRecordVO {
+    private String deviceId;
+    private String startTime;
+    private String endTime;
+    private Integer durationSeconds;
+
+    /**
+     * 停留质心
+     */
+    private Double latitude;
+    private Double longitude;
+
+    private Integer pointCount;
+
+    /**
+     * 所在商场区域，不在任何区域内时为 null
+     */
+    private Long mallAreaId;
+    private String mallAreaName;
+    private Integer floor;
+
+    /**
+     * 是否为仍在进行中的停留（结束时间为最近一次上报）
+     */
+    private Boolean ongoing;
+}
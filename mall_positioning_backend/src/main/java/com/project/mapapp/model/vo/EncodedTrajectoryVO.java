@@ -0,0 +1,30 @@
+package com.project.mapapp.model.vo;
+
+import lombok.Data;
+
+/**
+ * polyline 编码的历史轨迹
+ */
+@Data
+public class EncodedTrajectoryVO {
+
+    /**
+     * 设备ID
+     */
+    private String deviceId;
+
+    /**
+     * 点数
+     */
+    private Integer count;
+
+    /**
+     * 坐标精度（小数位数）
+     */
+    private Integer precision;
+
+    /**
+     * 编码后的轨迹：每个点依次为纬度、经度、记录时间（秒）相对前一个点的差值，解码见 TrajectoryCodec
+     */
+    private String points;
+}
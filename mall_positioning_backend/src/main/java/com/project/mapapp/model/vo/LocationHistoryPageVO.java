@@ -0,0 +1,23 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 历史轨迹分页结果（游标分页）
+ */
+@Data
+public class LocationHistoryPageVO {
+
+    /**
+     * 本页位置，按记录时间升序
+     */
+    private List<LocationResponseDTO> records;
+
+    /**
+     * 下一页游标，原样传回即可继续翻页；为空表示已到最后一页
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,62 @@
+package com.project.mapapp.model.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 位置上报链路运行指标
+ */
+@Data
+public class LocationIngestStatsVO {
+
+    /**
+     * 写缓冲中等待落库的条数
+     */
+    private int writeBufferPending;
+
+    /**
+     * 写缓冲溢出丢弃的条数
+     */
+    private long writeBufferDropped;
+
+    /**
+     * 写缓冲落到本地文件的条数
+     */
+    private long writeBufferSpilled;
+
+    /**
+     * 被识别为重复/重放而丢弃的条数
+     */
+    private long duplicates;
+
+    /**
+     * 比已推送的点更旧、只写入历史的迟到点条数
+     */
+    private long lateFixes;
+
+    /**
+     * 被静止点抑制的条数
+     */
+    private long motionSuppressed;
+
+    /**
+     * 触发单设备限流的次数
+     */
+    private long rateLimited;
+
+    /**
+     * 限流合并时被更新位置覆盖而丢弃的条数
+     */
+    private long rateLimitShed;
+
+    /**
+     * 限流后等待处理的设备数
+     */
+    private int rateLimitPending;
+
+    /**
+     * 流水线各阶段指标，未开启流水线时为空
+     */
+    private List<PipelineStageStatsVO> pipelineStages;
+}
@@ -0,0 +1,50 @@
+package com.project.mapapp.model.vo;
+
+import lombok.Data;
+
+/**
+ * 流水线单个阶段的运行指标
+ */
+@Data
+public class PipelineStageStatsVO {
+
+    /**
+     * 阶段名称
+     */
+    private String stage;
+
+    /**
+     * 工作线程数
+     */
+    private int workers;
+
+    /**
+     * 队列中等待处理的条数
+     */
+    private int depth;
+
+    /**
+     * 队列总容量
+     */
+    private int capacity;
+
+    /**
+     * 已处理条数
+     */
+    private long processed;
+
+    /**
+     * 处理失败条数
+     */
+    private long failed;
+
+    /**
+     * 因队列满而等待的次数
+     */
+    private long backpressure;
+
+    /**
+     * 平均处理耗时（微秒/条）
+     */
+    private long avgMicros;
+}
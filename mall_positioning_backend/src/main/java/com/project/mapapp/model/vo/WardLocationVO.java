@@ -0,0 +1,61 @@
+package com.project.mapapp.model.vo;
+
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import lombok.Data;
+
+/**
+ * 监护人首页：被监护人设备信息及最新位置
+ */
+@Data
+public class WardLocationVO {
+
+    /**
+     * 设备ID
+     */
+    private String deviceId;
+
+    /**
+     * 设备名称
+     */
+    private String deviceName;
+
+    /**
+     * 设备描述信息，用于区分不同被监护人的设备
+     */
+    private String deviceDescription;
+
+    /**
+     * 被监护人ID
+     */
+    private Long wardId;
+
+    /**
+     * 被监护人姓名
+     */
+    private String wardName;
+
+    /**
+     * 被监护人年龄
+     */
+    private Integer userAge;
+
+    /**
+     * 紧急联系人信息
+     */
+    private String emergencyContact;
+
+    /**
+     * 与监护人的关系
+     */
+    private String relationship;
+
+    /**
+     * 在线状态
+     */
+    private DevicePresenceVO presence;
+
+    /**
+     * 最新位置，设备从未上报时为 null
+     */
+    private LocationResponseDTO location;
+}
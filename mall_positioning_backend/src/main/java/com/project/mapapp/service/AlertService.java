@@ -1,9 +1,13 @@
 package com.project.mapapp.service;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.project.mapapp.model.entity.Alert;
 import com.project.mapapp.model.enums.AlertType;
+import com.project.mapapp.model.enums.ExportFormat;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -32,4 +36,11 @@ public interface AlertService extends IService<Alert> {
      * 创建新警报
      */
     boolean createAlert(Alert alert);
+
+    /**
+     * 导出警报：游标逐行读取，直接写入输出流
+     *
+     * @return 导出的行数
+     */
+    long exportAlerts(QueryWrapper<Alert> query, ExportFormat format, OutputStream out) throws IOException;
 }
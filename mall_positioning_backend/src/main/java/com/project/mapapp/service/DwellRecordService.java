@@ -0,0 +1,24 @@
+package com.project.mapapp.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.project.mapapp.model.entity.DwellRecord;
+import com.project.mapapp.model.vo.DwellRecordVO;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 针对表【dwell_record(停留记录表)】的数据库操作Service
+ */
+public interface DwellRecordService extends IService<DwellRecord> {
+
+    /**
+     * 查询与时间段有重叠的停留记录（按开始时间升序），包括仍在进行中的停留
+     */
+    List<DwellRecordVO> listDwellRecords(String deviceId, LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 按历史轨迹重新检测时间段内的停留，替换该时间段已有的记录
+     */
+    List<DwellRecordVO> recompute(String deviceId, LocalDateTime startTime, LocalDateTime endTime);
+}
@@ -3,7 +3,7 @@ package com.project.mapapp.service;
 import com.project.mapapp.common.BaseResponse;
 import com.project.mapapp.model.dto.geofence.GeoFenceCreateRequest;
 import com.project.mapapp.model.dto.geofence.GeoFenceUpdateRequest;
-import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.dto.location.LocationPoint;
 import com.project.mapapp.model.entity.GeoFence;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -25,7 +25,7 @@ public interface GeoFenceService extends IService<GeoFence> {
 
     boolean updateGeoFence(@Valid GeoFenceUpdateRequest updateRequest, Long id);
 
-    void checkLocation(LocationResponseDTO location);
+    void checkLocation(LocationPoint location);
 
 
 }
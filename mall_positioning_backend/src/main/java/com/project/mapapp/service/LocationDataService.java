@@ -1,11 +1,19 @@
 package com.project.mapapp.service;
 
+import com.project.mapapp.model.dto.location.LocationMessage;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
 import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.enums.ExportFormat;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.WardLocationVO;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.project.mapapp.utils.TrajectoryBuffer;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -14,15 +22,98 @@ import java.util.List;
 * @createDate 2025-03-25 09:36:34
 */
 public interface LocationDataService extends IService<LocationData> {
+    /**
+     * 处理单点位置上报
+     *
+     * @param timestamp 设备端定位时间，未上报时传 null
+     */
     boolean processLocation(
             String deviceId,
-            BigDecimal latitude,
-            BigDecimal longitude,
-            BigDecimal accuracy,
+            double latitude,
+            double longitude,
+            Double accuracy,
+            Date timestamp,
             Long guardianId
             );
 
+    /**
+     * 批量处理位置上报：一次事务内多行插入，只对最新位置做围栏校验和推送
+     *
+     * @param locations 按采集先后顺序排列的位置点
+     * @return 写入的行数
+     */
+    int processLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> locations);
+
+    /**
+     * 异步上报模式：投递到 location_queue 后立即返回，由 LocationConsumer 批量处理
+     */
+    void publishLocation(LocationReportDTO report);
+
+    /**
+     * 按 location.ingest.mode 处理一条已填充 deviceId、guardianId 的上报：MQ 模式投递到消息队列，否则同步处理
+     *
+     * @return 投递或处理是否成功
+     */
+    boolean ingestLocation(LocationReportDTO report);
+
+    /**
+     * 按 location.ingest.mode 处理一台设备的批量上报：MQ 模式逐条投递到消息队列，否则同步批量处理
+     * 批量上报是补传的历史点，不经过限流合并
+     *
+     * @param locations 按采集先后顺序排列的位置点
+     * @return 投递或写入的条数
+     */
+    int ingestLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> locations);
+
+    /**
+     * 处理从 location_queue 批量拉取的消息：一次多行插入，每台设备只对最新位置做围栏校验和推送
+     *
+     * @return 写入的行数
+     */
+    int processLocationMessages(List<LocationMessage> messages);
+
     LocationResponseDTO getLatestLocation(String deviceId, Long guardianId);
 
+    /**
+     * 监护人所有被监护人的设备信息和最新位置，全部来自内存缓存
+     */
+    List<WardLocationVO> listWardLatestLocations(Long guardianId);
+
     List<LocationData> queryHistory(String deviceId, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * 游标分页查询历史轨迹，按 (记录时间, ID) 定位，翻到多深代价都与首页相同
+     *
+     * @param cursor 上一页返回的 nextCursor，首页为空
+     */
+    LocationHistoryPageVO queryHistoryPage(String deviceId, LocalDateTime start, LocalDateTime end,
+                                           String cursor, int pageSize);
+
+    /**
+     * 抽稀后的历史轨迹，zoom 不为空时按缩放级别换算容差，否则使用 toleranceMeters
+     * 结束时间已过去的区间会被缓存
+     */
+    List<LocationResponseDTO> querySimplifiedHistory(String deviceId, LocalDateTime start, LocalDateTime end,
+                                                     Double toleranceMeters, Integer zoom);
+
+    /**
+     * 按列存放的历史轨迹，指定容差或缩放级别时为抽稀后的结果，供紧凑编码输出
+     */
+    TrajectoryBuffer queryTrajectory(String deviceId, LocalDateTime start, LocalDateTime end,
+                                     Double toleranceMeters, Integer zoom);
+
+    /**
+     * 流式导出历史轨迹：游标逐行读取，每行一个 JSON 对象（NDJSON）直接写入输出流，内存占用与时间范围无关
+     *
+     * @return 写出的行数
+     */
+    int streamHistory(String deviceId, LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException;
+
+    /**
+     * 导出多台设备的历史轨迹（xlsx/csv）：按设备依次流式读取，逐行写入输出流，内存占用与时间范围无关
+     *
+     * @return 导出的行数
+     */
+    long exportHistory(List<String> deviceIds, LocalDateTime start, LocalDateTime end,
+                       ExportFormat format, OutputStream out) throws IOException;
 }
@@ -6,12 +6,16 @@ import com.project.mapapp.manager.WebSocketSessionManager;
 import com.project.mapapp.model.dto.alert.AlertMessage;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
 import com.project.mapapp.model.dto.websocket.WebSocketMessage;
+import com.project.mapapp.model.vo.DevicePresenceVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 
 @Slf4j
 @Service
@@ -21,55 +25,115 @@ public class WebSocketService {
     private final ObjectMapper objectMapper;
 
     public void notifyGuardian(Long guardianId, LocationResponseDTO location) {
-        // 增强日志
-        log.info("准备推送消息给监护人: {}, 活跃会话数: {}",
-                guardianId,
-                sessionManager.getSessions(guardianId).size());
+        notifyGuardians(Collections.singleton(guardianId), location);
+    }
 
-        String message;
+    /**
+     * 位置推送给设备的所有监护人，只序列化一次
+     */
+    public void notifyGuardians(Collection<Long> guardianIds, LocationResponseDTO location) {
+        if (guardianIds == null || guardianIds.isEmpty()) {
+            return;
+        }
+
+        TextMessage message;
         try {
-            message = objectMapper.writeValueAsString(location);
-            log.debug("序列化消息: {}", message); // 调试日志
+            message = new TextMessage(objectMapper.writeValueAsString(location));
+            log.debug("序列化消息: {}", message.getPayload()); // 调试日志
         } catch (JsonProcessingException e) {
             log.error("序列化失败", e);
             return;
         }
 
-        sessionManager.getSessions(guardianId).forEach(session -> {
-            try {
-                if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(message));
-                    log.debug("消息已发送到会话: {}", session.getId());
-                } else {
-                    log.warn("会话已关闭: {}", session.getId());
+        for (Long guardianId : guardianIds) {
+            // 增强日志
+            log.info("准备推送消息给监护人: {}, 活跃会话数: {}",
+                    guardianId,
+                    sessionManager.getSessions(guardianId).size());
+
+            sessionManager.getSessions(guardianId).forEach(session -> {
+                try {
+                    if (session.isOpen()) {
+                        send(session, message);
+                        log.debug("消息已发送到会话: {}", session.getId());
+                    } else {
+                        log.warn("会话已关闭: {}", session.getId());
+                    }
+                } catch (IOException e) {
+                    log.error("发送失败，移除会话: {}", session.getId(), e);
+                    sessionManager.removeSession(guardianId, location.getDeviceId());
                 }
-            } catch (IOException e) {
-                log.error("发送失败，移除会话: {}", session.getId(), e);
-                sessionManager.removeSession(guardianId, location.getDeviceId());
-            }
-        });
+            });
+        }
     }
 
     // 新增警报推送方法
     public void pushAlert(Long guardianId, AlertMessage alert) {
+        pushAlert(Collections.singleton(guardianId), alert);
+    }
+
+    /**
+     * 警报推送给设备的所有监护人，只序列化一次
+     */
+    public void pushAlert(Collection<Long> guardianIds, AlertMessage alert) {
+        if (guardianIds == null || guardianIds.isEmpty()) {
+            return;
+        }
         try {
             WebSocketMessage<AlertMessage> message = new WebSocketMessage<>(
                     "ALERT",
                     alert
             );
-            String jsonMessage = objectMapper.writeValueAsString(message);
+            TextMessage jsonMessage = new TextMessage(objectMapper.writeValueAsString(message));
 
-            sessionManager.getSessions(guardianId).forEach(session -> {
-                try {
-                    if (session.isOpen()) {
-                        session.sendMessage(new TextMessage(jsonMessage));
+            for (Long guardianId : guardianIds) {
+                sessionManager.getSessions(guardianId).forEach(session -> {
+                    try {
+                        if (session.isOpen()) {
+                            send(session, jsonMessage);
+                        }
+                    } catch (IOException e) {
+                        log.error("警报推送失败: {}", e.getMessage());
                     }
-                } catch (IOException e) {
-                    log.error("警报推送失败: {}", e.getMessage());
-                }
-            });
+                });
+            }
         } catch (JsonProcessingException e) {
             log.error("序列化警报消息失败: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 设备上线/离线推送给设备的所有监护人
+     */
+    public void pushPresence(Collection<Long> guardianIds, DevicePresenceVO presence) {
+        if (guardianIds == null || guardianIds.isEmpty()) {
+            return;
+        }
+        try {
+            TextMessage jsonMessage = new TextMessage(objectMapper.writeValueAsString(
+                    new WebSocketMessage<>("PRESENCE", presence)));
+            for (Long guardianId : guardianIds) {
+                sessionManager.getSessions(guardianId).forEach(session -> {
+                    try {
+                        if (session.isOpen()) {
+                            send(session, jsonMessage);
+                        }
+                    } catch (IOException e) {
+                        log.error("在线状态推送失败: {}", e.getMessage());
+                    }
+                });
+            }
+        } catch (JsonProcessingException e) {
+            log.error("序列化在线状态消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * WebSocketSession 不支持并发发送，同一会话串行写出
+     */
+    private void send(WebSocketSession session, TextMessage message) throws IOException {
+        synchronized (session) {
+            session.sendMessage(message);
+        }
+    }
+}
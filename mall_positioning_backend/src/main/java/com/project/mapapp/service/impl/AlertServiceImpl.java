@@ -3,12 +3,19 @@ package com.project.mapapp.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.project.mapapp.mapper.AlertMapper;
+import com.project.mapapp.model.dto.alert.AlertExportRow;
 import com.project.mapapp.model.entity.Alert;
 import com.project.mapapp.model.enums.AlertStatus;
 import com.project.mapapp.model.enums.AlertType;
+import com.project.mapapp.model.enums.ExportFormat;
 import com.project.mapapp.service.AlertService;
+import com.project.mapapp.utils.ExportWriter;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -61,4 +68,17 @@ public class AlertServiceImpl extends ServiceImpl<AlertMapper, Alert> implements
     public boolean createAlert(Alert alert) {
         return this.save(alert);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportAlerts(QueryWrapper<Alert> query, ExportFormat format, OutputStream out) throws IOException {
+        // 设备名称由游标查询一并带出：流式游标未关闭前同一连接不能再发其他查询
+        try (ExportWriter<AlertExportRow> writer = new ExportWriter<>(format, AlertExportRow.class, "警报", out);
+             Cursor<Alert> cursor = alertMapper.streamAlerts(query)) {
+            for (Alert alert : cursor) {
+                writer.write(AlertExportRow.from(alert));
+            }
+            return writer.getCount();
+        }
+    }
 }
\ No newline at end of file
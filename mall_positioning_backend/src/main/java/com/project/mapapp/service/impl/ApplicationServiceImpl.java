@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DeviceRoutingTable;
 import com.project.mapapp.mapper.NotificationMapper;
 import com.project.mapapp.mapper.UserMapper;
 import com.project.mapapp.mapper.WardMapper;
@@ -42,6 +43,8 @@ public class ApplicationServiceImpl extends ServiceImpl<ApplicationMapper, Appli
     private WardMapper wardMapper;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private DeviceRoutingTable deviceRoutingTable;
 
     @Override
     public Application submitApplication(String guardianId, String wardDeviceId) {
@@ -92,6 +95,8 @@ public class ApplicationServiceImpl extends ServiceImpl<ApplicationMapper, Appli
 
         // 更新申请记录
         int count = applicationMapper.updateById(application);
+        deviceRoutingTable.updateGuardian(application.getWard_device_id(),
+                Long.valueOf(application.getGuardian_id()), isApproved);
         //更新被监护人信息
         String wardDeviceId = application.getWard_device_id();
         Long wardId = userMapper.selectById(wardDeviceId).getId();
@@ -8,6 +8,8 @@ import com.google.gson.Gson;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceRoutingTable;
+import com.project.mapapp.manager.WardProfileCache;
 import com.project.mapapp.model.dto.device.DeviceBindRequest;
 import com.project.mapapp.model.dto.device.DeviceUpdateRequest;
 import com.project.mapapp.model.entity.Device;
@@ -37,6 +39,12 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private DeviceRoutingTable deviceRoutingTable;
+
+    @Resource
+    private WardProfileCache wardProfileCache;
+
     @Override
     public Boolean bindDevice(String deviceId, Long userId, String email) {
         ThrowUtils.throwIf(deviceId == null||userId==null, ErrorCode.PARAMS_ERROR);
@@ -61,7 +69,11 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
         device.setName(redisDeviceInfo.getDeviceName());
         device.setUser_id(userId);
         device.setStatus(1); // 已绑定
-        return deviceMapper.insert(device) > 0;
+        boolean success = deviceMapper.insert(device) > 0;
+        if (success) {
+            deviceRoutingTable.bindDevice(userId, deviceId);
+        }
+        return success;
     }
 
     private void deleteVerificationCode(String email) {
@@ -114,6 +126,8 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, Device>
             // 返回更新结果
             if (updateCount > 0) {
                 log.info("设备 ID: {} 更新成功", deviceId);
+                deviceRoutingTable.refreshDevice(deviceId);
+                wardProfileCache.invalidate(deviceId);
                 return true;
             } else {
                 log.warn("设备 ID: {} 更新失败，未找到匹配的设备", deviceId);
@@ -0,0 +1,370 @@
+package com.project.mapapp.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.TrajectoryAppendListener;
+import com.project.mapapp.manager.TrajectoryStore;
+import com.project.mapapp.mapper.DwellRecordMapper;
+import com.project.mapapp.mapper.MallAreaMapper;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.DwellRecord;
+import com.project.mapapp.model.entity.MallArea;
+import com.project.mapapp.model.vo.DwellRecordVO;
+import com.project.mapapp.service.DwellRecordService;
+import com.project.mapapp.utils.StayPointDetector;
+import com.project.mapapp.utils.StayPointDetector.StayPoint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 停留点检测：上报链路上每台设备维护一个增量检测器，停留结束时写入一条记录；
+ * 设备超过 maxGapSeconds 不再上报时由后台线程结束其停留。历史时间段可按轨迹重新检测
+ * 停留质心按商场区域多边形匹配所在区域
+ *
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DwellRecordServiceImpl extends ServiceImpl<DwellRecordMapper, DwellRecord>
+        implements DwellRecordService, TrajectoryAppendListener {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LocationProperties locationProperties;
+    private final TrajectoryStore trajectoryStore;
+    private final MallAreaMapper mallAreaMapper;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    /**
+     * 每台设备的检测器，访问时锁住检测器本身
+     */
+    private final Map<String, StayPointDetector> detectors = new ConcurrentHashMap<>();
+
+    private volatile List<AreaShape> areas = Collections.emptyList();
+    private volatile long areasLoadedAt;
+
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void init() {
+        if (!locationProperties.getDwell().isEnabled()) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dwell-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::closeIdle, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (sweeper == null) {
+            return;
+        }
+        sweeper.shutdown();
+        // 进行中且已满足时长的停留按最后一次上报结束，避免停机丢失
+        List<AreaShape> areas = areas();
+        List<DwellRecord> closed = new ArrayList<>();
+        detectors.forEach((deviceId, detector) -> {
+            synchronized (detector) {
+                StayPoint stay = detector.finish();
+                if (stay != null) {
+                    closed.add(toRecord(deviceId, stay, areas));
+                }
+            }
+        });
+        save(closed);
+    }
+
+    @Override
+    public void onAppended(List<LocationPoint> points) {
+        if (!locationProperties.getDwell().isEnabled()) {
+            return;
+        }
+        List<AreaShape> areas = areas();
+        List<DwellRecord> closed = new ArrayList<>();
+        for (LocationPoint point : points) {
+            while (true) {
+                StayPointDetector detector = detectors.computeIfAbsent(point.getDeviceId(), id -> newDetector());
+                synchronized (detector) {
+                    // 拿到锁之前检测器可能已被 closeIdle 移除，重新获取
+                    if (detectors.get(point.getDeviceId()) != detector) {
+                        continue;
+                    }
+                    StayPoint stay = detector.offer(point.getLatitude(), point.getLongitude(), point.getCreateTime());
+                    if (stay != null) {
+                        closed.add(toRecord(point.getDeviceId(), stay, areas));
+                    }
+                    break;
+                }
+            }
+        }
+        save(closed);
+    }
+
+    @Override
+    public List<DwellRecordVO> listDwellRecords(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
+        ThrowUtils.throwIf(!locationProperties.getDwell().isEnabled(), ErrorCode.OPERATION_ERROR, "停留点检测未开启");
+        QueryWrapper<DwellRecord> query = new QueryWrapper<DwellRecord>()
+                .eq("device_id", deviceId)
+                .ge(startTime != null, "end_time", startTime)
+                .le(endTime != null, "start_time", endTime)
+                .orderByAsc("start_time");
+        List<DwellRecordVO> result = new ArrayList<>();
+        for (DwellRecord record : list(query)) {
+            result.add(toVO(record, false));
+        }
+
+        StayPointDetector detector = detectors.get(deviceId);
+        if (detector != null) {
+            StayPoint stay;
+            synchronized (detector) {
+                stay = detector.current();
+            }
+            if (stay != null && (startTime == null || stay.getEndTime() >= toMillis(startTime))
+                    && (endTime == null || stay.getStartTime() <= toMillis(endTime))) {
+                result.add(toVO(toRecord(deviceId, stay, areas()), true));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public List<DwellRecordVO> recompute(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
+        ThrowUtils.throwIf(!locationProperties.getDwell().isEnabled(), ErrorCode.OPERATION_ERROR, "停留点检测未开启");
+        ThrowUtils.throwIf(startTime == null || endTime == null || !startTime.isBefore(endTime),
+                ErrorCode.PARAMS_ERROR, "时间范围不正确");
+        // 今天的停留由上报链路实时检测，重算只用于已结束的日期，避免与进行中的停留重复
+        ThrowUtils.throwIf(!endTime.isBefore(LocalDate.now().atStartOfDay()),
+                ErrorCode.PARAMS_ERROR, "只能重算今天之前的停留");
+
+        // 区域在扫描前加载：扫描持有流式游标期间同一连接上不能再发其他查询
+        List<AreaShape> areas = areas();
+        StayPointDetector detector = newDetector();
+        List<DwellRecord> records = new ArrayList<>();
+        trajectoryStore.scan(deviceId, startTime, endTime, location -> {
+            StayPoint stay = detector.offer(location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(), toMillis(location.getCreate_time()));
+            if (stay != null) {
+                records.add(toRecord(deviceId, stay, areas));
+            }
+            return true;
+        });
+        StayPoint last = detector.finish();
+        if (last != null) {
+            records.add(toRecord(deviceId, last, areas));
+        }
+
+        remove(new QueryWrapper<DwellRecord>()
+                .eq("device_id", deviceId)
+                .between("start_time", startTime, endTime));
+        save(records);
+        log.info("重算停留记录 - deviceId: {}, {} ~ {}, 条数: {}", deviceId, startTime, endTime, records.size());
+
+        List<DwellRecordVO> result = new ArrayList<>(records.size());
+        for (DwellRecord record : records) {
+            result.add(toVO(record, false));
+        }
+        return result;
+    }
+
+    /**
+     * 结束超过 maxGapSeconds 未上报设备的停留，并移除其检测器
+     */
+    private void closeIdle() {
+        try {
+            long deadline = System.currentTimeMillis() - locationProperties.getDwell().getMaxGapSeconds() * 1000;
+            List<AreaShape> areas = areas();
+            List<DwellRecord> closed = new ArrayList<>();
+            detectors.forEach((deviceId, detector) -> {
+                synchronized (detector) {
+                    if (detector.getLastTime() < deadline) {
+                        StayPoint stay = detector.finish();
+                        if (stay != null) {
+                            closed.add(toRecord(deviceId, stay, areas));
+                        }
+                        detectors.remove(deviceId, detector);
+                    }
+                }
+            });
+            save(closed);
+        } catch (Exception e) {
+            log.error("结束空闲设备的停留失败", e);
+        }
+    }
+
+    private void save(List<DwellRecord> records) {
+        if (!records.isEmpty()) {
+            saveBatch(records);
+        }
+    }
+
+    private StayPointDetector newDetector() {
+        LocationProperties.Dwell config = locationProperties.getDwell();
+        return new StayPointDetector(config.getDistanceMeters(),
+                config.getMinDurationSeconds() * 1000, config.getMaxGapSeconds() * 1000);
+    }
+
+    private DwellRecord toRecord(String deviceId, StayPoint stay, List<AreaShape> areas) {
+        DwellRecord record = new DwellRecord();
+        record.setDevice_id(deviceId);
+        record.setStart_time(toLocalDateTime(stay.getStartTime()));
+        record.setEnd_time(toLocalDateTime(stay.getEndTime()));
+        record.setDuration_seconds((int) ((stay.getEndTime() - stay.getStartTime()) / 1000));
+        record.setLatitude(BigDecimal.valueOf(stay.getLatitude()).setScale(7, RoundingMode.HALF_UP));
+        record.setLongitude(BigDecimal.valueOf(stay.getLongitude()).setScale(7, RoundingMode.HALF_UP));
+        record.setPoint_count(stay.getCount());
+        AreaShape area = matchArea(areas, stay.getLatitude(), stay.getLongitude());
+        record.setMall_area_id(area != null ? area.id : null);
+        record.setCreate_time(LocalDateTime.now());
+        return record;
+    }
+
+    private DwellRecordVO toVO(DwellRecord record, boolean ongoing) {
+        DwellRecordVO vo = new DwellRecordVO();
+        vo.setDeviceId(record.getDevice_id());
+        vo.setStartTime(record.getStart_time().format(TIME_FORMATTER));
+        vo.setEndTime(record.getEnd_time().format(TIME_FORMATTER));
+        vo.setDurationSeconds(record.getDuration_seconds());
+        vo.setLatitude(record.getLatitude().doubleValue());
+        vo.setLongitude(record.getLongitude().doubleValue());
+        vo.setPointCount(record.getPoint_count());
+        vo.setMallAreaId(record.getMall_area_id());
+        if (record.getMall_area_id() != null) {
+            for (AreaShape area : areas()) {
+                if (area.id.equals(record.getMall_area_id())) {
+                    vo.setMallAreaName(area.name);
+                    vo.setFloor(area.floor);
+                    break;
+                }
+            }
+        }
+        vo.setOngoing(ongoing);
+        return vo;
+    }
+
+    /**
+     * 质心所在的商场区域，同时落在多个区域内时取面积最小的（更具体的区域）
+     */
+    private AreaShape matchArea(List<AreaShape> areas, double latitude, double longitude) {
+        Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
+        AreaShape matched = null;
+        for (AreaShape area : areas) {
+            if ((matched == null || area.area < matched.area) && area.polygon.contains(point)) {
+                matched = area;
+            }
+        }
+        return matched;
+    }
+
+    private List<AreaShape> areas() {
+        long now = System.currentTimeMillis();
+        if (now - areasLoadedAt < locationProperties.getDwell().getAreaRefreshSeconds() * 1000) {
+            return areas;
+        }
+        synchronized (this) {
+            if (now - areasLoadedAt >= locationProperties.getDwell().getAreaRefreshSeconds() * 1000) {
+                List<AreaShape> loaded = new ArrayList<>();
+                for (MallArea area : mallAreaMapper.selectList(null)) {
+                    Polygon polygon = parsePolygon(area);
+                    if (polygon != null) {
+                        loaded.add(new AreaShape(area.getId(), area.getName(), area.getFloor(), polygon));
+                    }
+                }
+                areas = loaded;
+                areasLoadedAt = now;
+            }
+            return areas;
+        }
+    }
+
+    /**
+     * 解析区域坐标，支持 GeoJSON Polygon 对象、多边形的环数组或 [[lng,lat],...] 点数组，只取外环
+     */
+    private Polygon parsePolygon(MallArea area) {
+        if (area.getCoordinates() == null) {
+            return null;
+        }
+        try {
+            Object parsed = JSON.parse(area.getCoordinates().toString());
+            JSONArray ring = parsed instanceof JSONObject
+                    ? ((JSONObject) parsed).getJSONArray("coordinates")
+                    : (JSONArray) parsed;
+            while (ring.getJSONArray(0).get(0) instanceof JSONArray) {
+                ring = ring.getJSONArray(0);
+            }
+            ThrowUtils.throwIf(ring.size() < 3, ErrorCode.PARAMS_ERROR, "至少需要3个坐标点");
+            List<Coordinate> coords = new ArrayList<>(ring.size() + 1);
+            for (int i = 0; i < ring.size(); i++) {
+                JSONArray lngLat = ring.getJSONArray(i);
+                coords.add(new Coordinate(lngLat.getDoubleValue(0), lngLat.getDoubleValue(1)));
+            }
+            // 首尾不同时闭合
+            if (!coords.get(0).equals2D(coords.get(coords.size() - 1))) {
+                coords.add(coords.get(0));
+            }
+            return geometryFactory.createPolygon(coords.toArray(new Coordinate[0]));
+        } catch (Exception e) {
+            log.warn("商场区域坐标格式错误，跳过 - areaId: {}", area.getId());
+            return null;
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static class AreaShape {
+        private final Long id;
+        private final String name;
+        private final Integer floor;
+        private final Polygon polygon;
+        private final double area;
+
+        AreaShape(Long id, String name, Integer floor, Polygon polygon) {
+            this.id = id;
+            this.name = name;
+            this.floor = floor;
+            this.polygon = polygon;
+            this.area = polygon.getArea();
+        }
+    }
+}
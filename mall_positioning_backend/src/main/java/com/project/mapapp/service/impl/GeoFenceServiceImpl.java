@@ -7,16 +7,15 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.project.mapapp.common.ErrorCode;
 import com.project.mapapp.exception.BusinessException;
 import com.project.mapapp.exception.ThrowUtils;
+import com.project.mapapp.manager.DeviceRoutingTable;
 import com.project.mapapp.mapper.DeviceMapper;
-import com.project.mapapp.mapper.LocationDataMapper;
 import com.project.mapapp.model.dto.alert.AlertMessage;
 import com.project.mapapp.model.dto.geofence.GeoFenceCreateRequest;
 import com.project.mapapp.model.dto.geofence.GeoFenceUpdateRequest;
-import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.dto.location.LocationPoint;
 import com.project.mapapp.model.entity.Alert;
 import com.project.mapapp.model.entity.GeoFence;
 import com.project.mapapp.mapper.GeoFenceMapper;
-import com.project.mapapp.model.entity.LocationData;
 import com.project.mapapp.model.enums.AlertType;
 import com.project.mapapp.service.AlertService;
 import com.project.mapapp.service.DeviceService;
@@ -28,11 +27,13 @@ import org.locationtech.jts.geom.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -45,8 +46,8 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
     private final WebSocketService webSocketService;
     private final DeviceService deviceService;
     private final GeometryFactory geometryFactory = new GeometryFactory();
-    private final LocationDataMapper locationDataMapper;
     private final DeviceMapper deviceMapper;
+    private final DeviceRoutingTable deviceRoutingTable;
 
     @Override
     public Boolean createGeoFence(GeoFenceCreateRequest request) {
@@ -130,15 +131,12 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
     }
 
     @Override
-    public void checkLocation(LocationResponseDTO location) {
+    public void checkLocation(LocationPoint location) {
         List<GeoFence> fences = geoFenceMapper.selectByDeviceId(location.getDeviceId());
         if (CollectionUtils.isEmpty(fences)) return;
 
         try {
-            Coordinate coord = new Coordinate(
-                    location.getLongitude().doubleValue(),
-                    location.getLatitude().doubleValue()
-            );
+            Coordinate coord = new Coordinate(location.getLongitude(), location.getLatitude());
             Point point = geometryFactory.createPoint(coord);
 
             for (GeoFence fence : fences) {
@@ -175,7 +173,7 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
         }
     }
 
-    private void handleFenceBreach(GeoFence fence, LocationResponseDTO location) {
+    private void handleFenceBreach(GeoFence fence, LocationPoint location) {
         try {
             // 1. 检查是否存在未解决的相同警报
             if (alertService.hasPendingAlert(fence.getId(), location.getDeviceId())) {
@@ -189,16 +187,16 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
             alert.setFence_id(fence.getId());
             alert.setType(AlertType.valueOf(AlertType.GEO_FENCE.name()));
             alert.setMessage(String.format("设备越出围栏%s", fence.getName()));
-            alert.setLatitude(location.getLatitude());
-            alert.setLongitude(location.getLongitude());
+            alert.setLatitude(BigDecimal.valueOf(location.getLatitude()));
+            alert.setLongitude(BigDecimal.valueOf(location.getLongitude()));
 
 
             // 4. 保存警报（在事务中）
             alertService.save(alert);
 
-            // 5. 获取监护人ID
-            Long guardianId = getGuardianId(location.getDeviceId());
-            if (guardianId == null) {
+            // 5. 获取设备的所有监护人
+            Set<Long> guardianIds = deviceRoutingTable.getGuardianIds(location.getDeviceId());
+            if (guardianIds.isEmpty()) {
                 log.warn("未找到设备关联的监护人: {}", location.getDeviceId());
                 return;
             }
@@ -207,7 +205,7 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
 
             // 6. 发送WebSocket通知
             webSocketService.pushAlert(
-                    guardianId,
+                    guardianIds,
                     new AlertMessage(
                             AlertType.GEO_FENCE,
                             "围栏报警",
@@ -225,15 +223,4 @@ public class GeoFenceServiceImpl extends ServiceImpl<GeoFenceMapper, GeoFence>
             throw new BusinessException(ErrorCode.PARAMS_ERROR,"处理围栏越界失败");
         }
     }
-
-    private Long getGuardianId(String deviceId) {
-        QueryWrapper<LocationData> queryWrapper = new QueryWrapper<>();
-        queryWrapper.select("guardian_id")
-                .eq("device_id", deviceId)
-                .orderByDesc("create_time")
-                .last("LIMIT 1");
-
-        LocationData locationData = locationDataMapper.selectOne(queryWrapper);
-        return locationData != null ? locationData.getGuardian_id() : null;
-    }
 }
\ No newline at end of file
@@ -1,21 +1,63 @@
 package com.project.mapapp.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.project.mapapp.common.ErrorCode;
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.exception.BusinessException;
+import com.project.mapapp.manager.DevicePresenceTracker;
+import com.project.mapapp.manager.DeviceRoutingTable;
+import com.project.mapapp.manager.HistoryDayCache;
+import com.project.mapapp.manager.LatestLocationStore;
+import com.project.mapapp.manager.LocationMotionFilter;
+import com.project.mapapp.manager.LocationOrderGuard;
+import com.project.mapapp.manager.LocationPipeline;
+import com.project.mapapp.manager.LocationWriteBuffer;
+import com.project.mapapp.manager.SimplifiedTrajectoryCache;
+import com.project.mapapp.manager.TrajectoryAppendNotifier;
+import com.project.mapapp.manager.TrajectoryStore;
+import com.project.mapapp.manager.WardProfileCache;
 import com.project.mapapp.mapper.GeoFenceMapper;
+import com.project.mapapp.model.dto.location.LocationExportRow;
+import com.project.mapapp.model.dto.location.LocationMessage;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
 import com.project.mapapp.model.entity.LocationData;
+import com.project.mapapp.model.enums.ExportFormat;
+import com.project.mapapp.model.vo.LocationHistoryPageVO;
+import com.project.mapapp.model.vo.WardLocationVO;
 import com.project.mapapp.service.GeoFenceService;
 import com.project.mapapp.service.LocationDataService;
 import com.project.mapapp.mapper.LocationDataMapper;
 import com.project.mapapp.service.WebSocketService;
+import com.project.mapapp.utils.ExportWriter;
+import com.project.mapapp.utils.TrajectoryBuffer;
+import com.project.mapapp.utils.TrajectorySimplifier;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
 * @author jjw
@@ -26,6 +68,11 @@ import java.util.List;
 public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, LocationData>
     implements LocationDataService {
 
+    /**
+     * 单条 INSERT 语句最多携带的行数，避免超过 max_allowed_packet
+     */
+    private static final int BATCH_INSERT_SIZE = 500;
+
     @Autowired
     private WebSocketService webSocketService;
 
@@ -35,6 +82,51 @@ public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, Loc
     @Autowired
     private GeoFenceService geoFenceService;
 
+    @Autowired
+    private LocationWriteBuffer locationWriteBuffer;
+
+    @Autowired
+    private DeviceRoutingTable deviceRoutingTable;
+
+    @Autowired
+    private LocationMotionFilter locationMotionFilter;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private LocationPipeline locationPipeline;
+
+    @Autowired
+    private LocationOrderGuard locationOrderGuard;
+
+    @Autowired
+    private LatestLocationStore latestLocationStore;
+
+    @Autowired
+    private WardProfileCache wardProfileCache;
+
+    @Autowired
+    private DevicePresenceTracker devicePresenceTracker;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SimplifiedTrajectoryCache simplifiedTrajectoryCache;
+
+    @Autowired
+    private TrajectoryStore trajectoryStore;
+
+    @Autowired
+    private HistoryDayCache historyDayCache;
+
+    @Autowired
+    private TrajectoryAppendNotifier trajectoryAppendNotifier;
+
+    @Autowired
+    private LocationProperties locationProperties;
+
     /**
      * 处理位置上报
      */
@@ -42,77 +134,378 @@ public class LocationDataServiceImpl extends ServiceImpl<LocationDataMapper, Loc
     @Transactional
     public boolean processLocation(
             String deviceId,
-            BigDecimal latitude,
-            BigDecimal longitude,
-            BigDecimal accuracy,
+            double latitude,
+            double longitude,
+            Double accuracy,
+            Date timestamp,
             Long guardianId) {
 
-        // 1. 保存到数据库
-        LocationData location = new LocationData();
-        location.setDevice_id(deviceId);
-        location.setLatitude(latitude);
-        location.setLongitude(longitude);
-        location.setAccuracy(accuracy);
-        location.setGuardian_id(guardianId);
+        LocationPoint point = new LocationPoint();
+        point.setDeviceId(deviceId);
+        point.setLatitude(latitude);
+        point.setLongitude(longitude);
+        if (accuracy != null) {
+            point.setAccuracy(accuracy);
+        }
+        point.setGuardianId(guardianId);
+        point.setCreateTime(System.currentTimeMillis());
+        if (timestamp != null) {
+            point.setTimestamp(timestamp.getTime());
+        }
+        locationOrderGuard.normalize(point);
 
-        int insert = locationDataTestMapper.insert(location);
+        // 1. 静止点抑制：原地停留时只保留心跳点，被抑制的点视为上报成功
+        if (!locationMotionFilter.accept(point)) {
+            return true;
+        }
 
-        // 2. 通过WebSocket通知监护人
-        LocationResponseDTO dto = convertToResponseDTO(location);
-        webSocketService.notifyGuardian(guardianId, dto);
-        geoFenceService.checkLocation(dto);
+        // 比已推送的点更旧的迟到点只写历史
+        point.setPersistOnly(!locationOrderGuard.admitLive(point));
+        if (!point.isPersistOnly()) {
+            latestLocationStore.update(point);
+        }
+
+        // 开启流水线时交给各阶段的工作线程异步处理
+        if (locationPipeline.isEnabled()) {
+            locationPipeline.submit(point);
+            return true;
+        }
+
+        // 2. 保存到数据库（开启写缓冲时只入队，由后台线程批量写入）
+        int insert;
+        if (locationWriteBuffer.isEnabled()) {
+            locationWriteBuffer.offer(point);
+            insert = 1;
+        } else {
+            List<LocationPoint> single = Collections.singletonList(point);
+            insert = trajectoryStore.append(single);
+            trajectoryAppendNotifier.appended(single);
+        }
+
+        // 3. 通过WebSocket通知设备的所有监护人
+        if (!point.isPersistOnly()) {
+            webSocketService.notifyGuardians(deviceRoutingTable.getGuardianIds(deviceId), LocationResponseDTO.from(point));
+            geoFenceService.checkLocation(point);
+        }
         return insert > 0;
     }
 
     /**
-     * 获取最新位置
+     * 批量处理位置上报
      */
-    public LocationResponseDTO getLatestLocation(String deviceId, Long guardianId) {
-        QueryWrapper<LocationData> query = new QueryWrapper<>();
-        query.eq("device_id", deviceId)
-                .eq("guardian_id", guardianId)
-                .orderByDesc("create_time")
-                .last("LIMIT 1");
+    @Override
+    @Transactional
+    public int processLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> locations) {
+        if (locations == null || locations.isEmpty()) {
+            return 0;
+        }
 
-        LocationData location = locationDataTestMapper.selectOne(query);
-        return convertToResponseDTO(location);
+        long now = System.currentTimeMillis();
+        List<LocationPoint> points = new ArrayList<>(locations.size());
+        for (LocationReportDTO report : locations) {
+            points.add(LocationPoint.of(deviceId, guardianId, report, now));
+        }
+        return persistAndDispatch(points);
     }
 
     @Override
-    public List<LocationData> queryHistory(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
-        QueryWrapper<LocationData> queryWrapper = new QueryWrapper<>();
+    public boolean ingestLocation(LocationReportDTO report) {
+        if (locationProperties.getIngest().getMode() == LocationProperties.IngestMode.MQ) {
+            publishLocation(report);
+            return true;
+        }
+        return processLocation(report.getDeviceId(), report.getLatitude(), report.getLongitude(),
+                report.getAccuracy(), report.getCreateTime(), report.getGuardianId());
+    }
+
+    @Override
+    @Transactional
+    public int ingestLocationBatch(String deviceId, Long guardianId, List<LocationReportDTO> locations) {
+        if (locationProperties.getIngest().getMode() != LocationProperties.IngestMode.MQ) {
+            return processLocationBatch(deviceId, guardianId, locations);
+        }
+        for (LocationReportDTO location : locations) {
+            location.setDeviceId(deviceId);
+            location.setGuardianId(guardianId);
+            publishLocation(location);
+        }
+        return locations.size();
+    }
+
+    @Override
+    public void publishLocation(LocationReportDTO report) {
+        LocationMessage message = new LocationMessage();
+        message.setDeviceId(report.getDeviceId());
+        message.setGuardianId(report.getGuardianId());
+        message.setLatitude(report.getLatitude());
+        message.setLongitude(report.getLongitude());
+        message.setAccuracy(report.getAccuracy());
+        message.setTimestamp(report.getCreateTime() != null ? report.getCreateTime().getTime() : null);
+        message.setReceivedAt(System.currentTimeMillis());
+        rabbitTemplate.convertAndSend("location_exchange", "location_routing_key", message);
+    }
 
-        // 设备ID条件
-        queryWrapper.eq("device_id", deviceId);
+    @Override
+    @Transactional
+    public int processLocationMessages(List<LocationMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return 0;
+        }
+        List<LocationPoint> points = new ArrayList<>(messages.size());
+        for (LocationMessage message : messages) {
+            LocationPoint point = new LocationPoint();
+            point.setDeviceId(message.getDeviceId());
+            point.setGuardianId(message.getGuardianId());
+            point.setLatitude(message.getLatitude());
+            point.setLongitude(message.getLongitude());
+            if (message.getAccuracy() != null) {
+                point.setAccuracy(message.getAccuracy());
+            }
+            if (message.getTimestamp() != null) {
+                point.setTimestamp(message.getTimestamp());
+            }
+            point.setCreateTime(message.getReceivedAt());
+            points.add(point);
+        }
+        return persistAndDispatch(points);
+    }
 
-        // 时间范围条件
-        if (startTime != null) {
-            queryWrapper.ge("create_time", startTime);
+    /**
+     * 静止点抑制后分段多行插入，每台设备只对最新位置推送和校验围栏
+     */
+    private int persistAndDispatch(List<LocationPoint> points) {
+        // 1. 按定位时间排序后做静止点抑制
+        for (LocationPoint point : points) {
+            locationOrderGuard.normalize(point);
+        }
+        locationOrderGuard.sort(points);
+        points = locationMotionFilter.filter(points);
+        if (points.isEmpty()) {
+            return 0;
+        }
+
+        // 2. 每台设备只有最新位置需要推送和校验围栏，且不能比已推送的点更旧
+        Map<String, LocationPoint> latestByDevice = new LinkedHashMap<>();
+        for (LocationPoint point : points) {
+            latestByDevice.put(point.getDeviceId(), point);
         }
-        if (endTime != null) {
-            queryWrapper.le("create_time", endTime);
+        latestByDevice.values().removeIf(latest -> !locationOrderGuard.admitLive(latest));
+        for (LocationPoint latest : latestByDevice.values()) {
+            latestLocationStore.update(latest);
         }
 
-        // 按时间升序排序
-        queryWrapper.orderByAsc("create_time");
+        // 开启流水线时交给各阶段的工作线程异步处理
+        if (locationPipeline.isEnabled()) {
+            for (LocationPoint point : points) {
+                point.setPersistOnly(latestByDevice.get(point.getDeviceId()) != point);
+                locationPipeline.submit(point);
+            }
+            return points.size();
+        }
+
+        // 3. 分段多行插入（开启写缓冲时只入队）
+        int inserted = 0;
+        if (locationWriteBuffer.isEnabled()) {
+            locationWriteBuffer.offerAll(points);
+            inserted = points.size();
+        } else {
+            for (int from = 0; from < points.size(); from += BATCH_INSERT_SIZE) {
+                inserted += trajectoryStore.append(
+                        points.subList(from, Math.min(from + BATCH_INSERT_SIZE, points.size())));
+            }
+            trajectoryAppendNotifier.appended(points);
+        }
 
-        return this.list(queryWrapper);
+        // 4. 推送和校验围栏
+        for (LocationPoint latest : latestByDevice.values()) {
+            webSocketService.notifyGuardians(deviceRoutingTable.getGuardianIds(latest.getDeviceId()),
+                    LocationResponseDTO.from(latest));
+            geoFenceService.checkLocation(latest);
+        }
+        return inserted;
+    }
+
+    /**
+     * 获取最新位置：读内存中的最新位置，冷启动未命中时才回源数据库
+     * 只有已通过申请的监护人可以查看
+     */
+    public LocationResponseDTO getLatestLocation(String deviceId, Long guardianId) {
+        if (!deviceRoutingTable.getGuardianIds(deviceId).contains(guardianId)) {
+            return null;
+        }
+        LocationPoint latest = latestLocationStore.get(deviceId);
+        return latest == null ? null : LocationResponseDTO.from(latest);
     }
 
-    private LocationResponseDTO convertToResponseDTO(LocationData location) {
-        if (location == null) return null;
+    @Override
+    public List<WardLocationVO> listWardLatestLocations(Long guardianId) {
+        Set<String> deviceIds = deviceRoutingTable.getDeviceIds(guardianId);
+        if (deviceIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, WardLocationVO> profiles = wardProfileCache.getAll(deviceIds);
+        Map<String, LocationPoint> latest = latestLocationStore.getAll(profiles.keySet());
 
-        LocationResponseDTO dto = new LocationResponseDTO();
-        dto.setLatitude(location.getLatitude());
-        dto.setLongitude(location.getLongitude());
-        dto.setAccuracy(location.getAccuracy());
-        dto.setDeviceId(location.getDevice_id());
-        dto.setCreateTime(String.valueOf(location.getCreate_time()));
-        return dto;
+        List<WardLocationVO> result = new ArrayList<>(profiles.size());
+        for (WardLocationVO profile : profiles.values()) {
+            WardLocationVO vo = new WardLocationVO();
+            BeanUtils.copyProperties(profile, vo);
+            LocationPoint point = latest.get(profile.getDeviceId());
+            vo.setLocation(point == null ? null : LocationResponseDTO.from(point));
+            vo.setPresence(devicePresenceTracker.getPresence(profile.getDeviceId()));
+            result.add(vo);
+        }
+        return result;
     }
 
-}
+    @Override
+    public List<LocationData> queryHistory(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
+        List<LocationData> locations = new ArrayList<>();
+        historyDayCache.scan(deviceId, startTime, endTime, locations::add);
+        return locations;
+    }
 
+    @Override
+    public LocationHistoryPageVO queryHistoryPage(String deviceId, LocalDateTime startTime, LocalDateTime endTime,
+                                                  String cursor, int pageSize) {
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            // 游标内容：记录时间|ID
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int split = decoded.lastIndexOf('|');
+                afterTime = LocalDateTime.parse(decoded.substring(0, split));
+                afterId = Long.parseLong(decoded.substring(split + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "分页游标无效");
+            }
+        }
 
+        // 多取一行用来判断是否还有下一页
+        List<LocationData> rows = trajectoryStore.page(deviceId, startTime, endTime, afterTime, afterId, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<LocationData> pageRows = hasMore ? rows.subList(0, pageSize) : rows;
+
+        List<LocationResponseDTO> records = new ArrayList<>(pageRows.size());
+        for (LocationData row : pageRows) {
+            records.add(LocationResponseDTO.from(row));
+        }
+        LocationHistoryPageVO page = new LocationHistoryPageVO();
+        page.setRecords(records);
+        if (hasMore) {
+            LocationData last = pageRows.get(pageRows.size() - 1);
+            String position = last.getCreate_time() + "|" + last.getId();
+            page.setNextCursor(Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(position.getBytes(StandardCharsets.UTF_8)));
+        }
+        return page;
+    }
 
+    @Override
+    public List<LocationResponseDTO> querySimplifiedHistory(String deviceId, LocalDateTime startTime,
+                                                            LocalDateTime endTime, Double toleranceMeters,
+                                                            Integer zoom) {
+        TrajectoryBuffer trajectory = queryTrajectory(deviceId, startTime, endTime, toleranceMeters, zoom);
+        List<LocationResponseDTO> result = new ArrayList<>(trajectory.size());
+        for (int i = 0; i < trajectory.size(); i++) {
+            result.add(LocationResponseDTO.from(deviceId, trajectory, i));
+        }
+        return result;
+    }
+
+    @Override
+    public TrajectoryBuffer queryTrajectory(String deviceId, LocalDateTime startTime, LocalDateTime endTime,
+                                            Double toleranceMeters, Integer zoom) {
+        if (zoom == null && toleranceMeters == null) {
+            return loadTrajectory(deviceId, startTime, endTime);
+        }
+        String level = zoom != null ? "z" + zoom : "t" + toleranceMeters;
+        String cacheKey = simplifiedTrajectoryCache.key(deviceId, startTime, endTime, level);
+        TrajectoryBuffer cached = simplifiedTrajectoryCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        TrajectoryBuffer trajectory = loadTrajectory(deviceId, startTime, endTime);
+        double tolerance = zoom != null && trajectory.size() > 0
+                ? TrajectorySimplifier.toleranceForZoom(zoom, trajectory.latitude(0))
+                : toleranceMeters;
+        int[] kept = TrajectorySimplifier.simplify(
+                trajectory.latitudes(), trajectory.longitudes(), trajectory.size(), tolerance);
+        TrajectoryBuffer simplified = trajectory.select(kept);
+        simplifiedTrajectoryCache.put(cacheKey, simplified);
+        return simplified;
+    }
 
+    /**
+     * 只把数值读进列数组，不保留每行的实体对象
+     */
+    private TrajectoryBuffer loadTrajectory(String deviceId, LocalDateTime startTime, LocalDateTime endTime) {
+        TrajectoryBuffer buffer = new TrajectoryBuffer();
+        historyDayCache.scan(deviceId, startTime, endTime, location -> {
+            appendTo(buffer, location);
+            return true;
+        });
+        return buffer;
+    }
+
+    private static void appendTo(TrajectoryBuffer buffer, LocationData location) {
+        buffer.add(location.getLatitude().doubleValue(),
+                location.getLongitude().doubleValue(),
+                location.getAccuracy() != null ? location.getAccuracy().doubleValue() : Double.NaN,
+                location.getCreate_time().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    @Override
+    public int streamHistory(String deviceId, LocalDateTime startTime, LocalDateTime endTime,
+                             OutputStream out) throws IOException {
+        // 逐行写出时不每次刷新，由生成器缓冲区满后自然写出
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        int[] count = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // 响应流由容器负责关闭；换行由下面显式写出，不使用默认的空格分隔
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            try {
+                // 流式导出边读边写，内存占用恒定，直接读存储，不经过日缓存（日缓存会先把整天加载到内存）
+                trajectoryStore.scan(deviceId, startTime, endTime, location -> {
+                    try {
+                        writer.writeValue(generator, LocationResponseDTO.from(location));
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                    return true;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return count[0];
+    }
+
+    @Override
+    public long exportHistory(List<String> deviceIds, LocalDateTime startTime, LocalDateTime endTime,
+                              ExportFormat format, OutputStream out) throws IOException {
+        try (ExportWriter<LocationExportRow> writer = new ExportWriter<>(format, LocationExportRow.class, "轨迹", out)) {
+            for (String deviceId : deviceIds) {
+                // 导出范围大且只读一次，直接读存储，不经过日缓存
+                try {
+                    trajectoryStore.scan(deviceId, startTime, endTime, location -> {
+                        try {
+                            writer.write(LocationExportRow.from(location));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return true;
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            return writer.getCount();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.project.mapapp.utils;
+
+import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.alibaba.excel.support.ExcelTypeEnum;
+import com.alibaba.excel.write.metadata.WriteSheet;
+import com.project.mapapp.model.enums.ExportFormat;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 导出文件的流式写出，逐行写入，内存占用与总行数无关
+ * xlsx 由 EasyExcel 按批写入（底层为 SXSSF，只在内存保留最近的少量行），单个工作表写满后续写到下一个；
+ * csv 逐行直接写出，带 UTF-8 BOM 以便 Excel 识别中文
+ * 列名和顺序取自行类型上的 @ExcelProperty
+ *
+ */
+public class ExportWriter<T> implements Closeable {
+
+    private static final int BATCH_ROWS = 1000;
+
+    /**
+     * xlsx 单个工作表最多 1048576 行，留出表头
+     */
+    private static final int SHEET_MAX_ROWS = 1000000;
+
+    private final ExportFormat format;
+    private final String sheetName;
+    private final List<Field> columns;
+
+    private ExcelWriter excelWriter;
+    private WriteSheet sheet;
+    private int sheetIndex;
+    private int sheetRows;
+    private final List<T> batch = new ArrayList<>(BATCH_ROWS);
+
+    private Writer csvWriter;
+
+    private long count;
+
+    public ExportWriter(ExportFormat format, Class<T> rowType, String sheetName, OutputStream out) throws IOException {
+        this.format = format;
+        this.sheetName = sheetName;
+        this.columns = columnsOf(rowType);
+        if (format == ExportFormat.XLSX) {
+            // 响应流由容器负责关闭
+            excelWriter = EasyExcel.write(out, rowType).excelType(ExcelTypeEnum.XLSX).autoCloseStream(false).build();
+            sheet = EasyExcel.writerSheet(0, sheetName).build();
+        } else {
+            csvWriter = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            csvWriter.write('\uFEFF');
+            List<String> header = new ArrayList<>(columns.size());
+            for (Field column : columns) {
+                header.add(column.getAnnotation(ExcelProperty.class).value()[0]);
+            }
+            writeCsvLine(header);
+        }
+    }
+
+    /**
+     * 设置下载响应头，文件名为 前缀-日期.扩展名
+     */
+    public static void prepareResponse(HttpServletResponse response, String filePrefix, ExportFormat format) {
+        String fileName = filePrefix + "-" + LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE)
+                + "." + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+    }
+
+    public void write(T row) throws IOException {
+        count++;
+        if (format == ExportFormat.CSV) {
+            List<String> values = new ArrayList<>(columns.size());
+            for (Field column : columns) {
+                try {
+                    Object value = column.get(row);
+                    values.add(value == null ? "" : value.toString());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            writeCsvLine(values);
+            return;
+        }
+        if (sheetRows == SHEET_MAX_ROWS) {
+            flushBatch();
+            sheetIndex++;
+            sheetRows = 0;
+            sheet = EasyExcel.writerSheet(sheetIndex, sheetName + (sheetIndex + 1)).build();
+        }
+        batch.add(row);
+        sheetRows++;
+        if (batch.size() >= BATCH_ROWS) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * 已写出的行数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (excelWriter != null) {
+            flushBatch();
+            excelWriter.finish();
+        } else {
+            csvWriter.flush();
+        }
+    }
+
+    private void flushBatch() {
+        if (!batch.isEmpty()) {
+            excelWriter.write(batch, sheet);
+            batch.clear();
+        }
+    }
+
+    private void writeCsvLine(List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                csvWriter.write(',');
+            }
+            csvWriter.write(escapeCsv(values.get(i)));
+        }
+        csvWriter.write("\r\n");
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static List<Field> columnsOf(Class<?> rowType) {
+        List<Field> columns = new ArrayList<>();
+        for (Field field : rowType.getDeclaredFields()) {
+            if (field.isAnnotationPresent(ExcelProperty.class)) {
+                field.setAccessible(true);
+                columns.add(field);
+            }
+        }
+        columns.sort(Comparator.comparingInt(field -> field.getAnnotation(ExcelProperty.class).index()));
+        return columns;
+    }
+}
@@ -0,0 +1,25 @@
+package com.project.mapapp.utils;
+
+/**
+ * 地理计算工具类
+ *
+ */
+public class GeoUtils {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * 两点间的近似距离（米）
+     * 使用等距柱状投影近似，商场/城市尺度内误差可忽略，比 Haversine 少了反三角运算
+     */
+    public static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double radLat1 = Math.toRadians(lat1);
+        double radLat2 = Math.toRadians(lat2);
+        double x = Math.toRadians(lng2 - lng1) * Math.cos((radLat1 + radLat2) / 2);
+        double y = radLat2 - radLat1;
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_METERS;
+    }
+}
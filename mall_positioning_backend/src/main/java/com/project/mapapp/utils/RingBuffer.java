@@ -0,0 +1,102 @@
+package com.project.mapapp.utils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界无锁环形队列（每个槽位带序号，多生产者/多消费者安全）
+ * 容量向上取整为 2 的幂，满时 offer 返回 false，由调用方决定等待还是放弃
+ *
+ */
+public class RingBuffer<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public RingBuffer(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.set(index, element);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E element = slots.get(index);
+                    slots.set(index, null);
+                    sequences.set(index, pos + capacity);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * 取出最多 max 个元素追加到 target，返回取出的个数
+     */
+    public int drainTo(List<E> target, int max) {
+        int count = 0;
+        E element;
+        while (count < max && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
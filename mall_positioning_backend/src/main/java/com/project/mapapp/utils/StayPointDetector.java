@@ -0,0 +1,120 @@
+package com.project.mapapp.utils;
+
+/**
+ * 增量停留点检测（距离/时间阈值聚类）：逐点输入，当前点距离停留簇质心不超过 distanceMeters 时并入簇，
+ * 否则簇结束，持续时间不少于 minDurationMs 的簇即为一次停留；相邻两点间隔超过 maxGapMs 时也结束当前簇
+ * 一台设备一个实例，非线程安全；点需按时间顺序输入，更早的点被忽略
+ *
+ */
+public class StayPointDetector {
+
+    private final double distanceMeters;
+    private final long minDurationMs;
+    private final long maxGapMs;
+
+    private int count;
+    private double latitudeSum;
+    private double longitudeSum;
+    private long startTime;
+    private long lastTime;
+
+    public StayPointDetector(double distanceMeters, long minDurationMs, long maxGapMs) {
+        this.distanceMeters = distanceMeters;
+        this.minDurationMs = minDurationMs;
+        this.maxGapMs = maxGapMs;
+    }
+
+    /**
+     * 输入一个点（时间为毫秒时间戳）
+     *
+     * @return 因这个点而结束的停留，没有时返回 null
+     */
+    public StayPoint offer(double latitude, double longitude, long time) {
+        if (count > 0 && time < lastTime) {
+            return null;
+        }
+        StayPoint closed = null;
+        if (count > 0 && (time - lastTime > maxGapMs || GeoUtils.distanceMeters(
+                latitudeSum / count, longitudeSum / count, latitude, longitude) > distanceMeters)) {
+            closed = finish();
+        }
+        if (count == 0) {
+            startTime = time;
+        }
+        count++;
+        latitudeSum += latitude;
+        longitudeSum += longitude;
+        lastTime = time;
+        return closed;
+    }
+
+    /**
+     * 当前簇已满足停留时长时返回进行中的停留，否则返回 null
+     */
+    public StayPoint current() {
+        return count > 0 && lastTime - startTime >= minDurationMs ? toStayPoint() : null;
+    }
+
+    /**
+     * 最后一个点的时间，没有点时为 0
+     */
+    public long getLastTime() {
+        return count > 0 ? lastTime : 0;
+    }
+
+    /**
+     * 结束当前簇
+     *
+     * @return 当前簇满足停留时长时返回停留，否则返回 null
+     */
+    public StayPoint finish() {
+        StayPoint stay = current();
+        count = 0;
+        latitudeSum = 0;
+        longitudeSum = 0;
+        return stay;
+    }
+
+    private StayPoint toStayPoint() {
+        return new StayPoint(startTime, lastTime, latitudeSum / count, longitudeSum / count, count);
+    }
+
+    /**
+     * 一次停留：起止时间（毫秒）、质心和点数
+     */
+    public static class StayPoint {
+        private final long startTime;
+        private final long endTime;
+        private final double latitude;
+        private final double longitude;
+        private final int count;
+
+        public StayPoint(long startTime, long endTime, double latitude, double longitude, int count) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+}
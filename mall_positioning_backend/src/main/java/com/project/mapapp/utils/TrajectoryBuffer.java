@@ -0,0 +1,98 @@
+package com.project.mapapp.utils;
+
+import java.util.Arrays;
+
+/**
+ * 按列存放的轨迹点（纬度、经度、精度、时间各一个基本类型数组）
+ * 逐行读取数据库时只追加数值，不为每个点保留对象，供抽稀等批量计算使用
+ *
+ */
+public class TrajectoryBuffer {
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] accuracies;
+    private long[] times;
+    private int size;
+
+    public TrajectoryBuffer() {
+        this(256);
+    }
+
+    public TrajectoryBuffer(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        accuracies = new double[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * 追加一个点，没有精度时传 NaN
+     */
+    public void add(double latitude, double longitude, double accuracy, long time) {
+        if (size == times.length) {
+            int capacity = size + (size >> 1);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            accuracies = Arrays.copyOf(accuracies, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        accuracies[size] = accuracy;
+        times[size] = time;
+        size++;
+    }
+
+    /**
+     * 按下标取出部分点组成新的轨迹
+     */
+    public TrajectoryBuffer select(int[] indices) {
+        TrajectoryBuffer result = new TrajectoryBuffer(indices.length);
+        for (int index : indices) {
+            result.add(latitudes[index], longitudes[index], accuracies[index], times[index]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * 精度（米），没有时为 NaN
+     */
+    public double accuracy(int index) {
+        return accuracies[index];
+    }
+
+    /**
+     * 时间（毫秒时间戳）
+     */
+    public long time(int index) {
+        return times[index];
+    }
+
+    /**
+     * 纬度数组，有效长度为 size()
+     */
+    public double[] latitudes() {
+        return latitudes;
+    }
+
+    /**
+     * 经度数组，有效长度为 size()
+     */
+    public double[] longitudes() {
+        return longitudes;
+    }
+}
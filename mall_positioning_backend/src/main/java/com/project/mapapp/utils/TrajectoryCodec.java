@@ -0,0 +1,194 @@
+package com.project.mapapp.utils;
+
+import java.util.Arrays;
+
+/**
+ * 轨迹紧凑编码：坐标按精度取整、时间取秒，每个值与前一个点作差，再用 zigzag + 变长整数编码
+ * 相邻定位点的差值很小，通常每个值只占 1~2 字节
+ *
+ * polyline：Google 折线算法的三元组版本（纬度、经度、时间），可直接放进 JSON 字符串，坐标精度 1e-5
+ * binary：变长整数二进制帧，坐标精度 1e-6，帧格式：
+ * <pre>
+ * 版本(1) 点数(varint)
+ * 每个点：纬度差 经度差 时间差(秒) 精度(米+1，0 表示无)  —— 前三项为 zigzag varint，精度为 varint
+ * </pre>
+ *
+ */
+public class TrajectoryCodec {
+
+    public static final String BINARY_MEDIA_TYPE = "application/x-trajectory";
+
+    public static final int POLYLINE_PRECISION = 5;
+    public static final int BINARY_PRECISION = 6;
+
+    private static final int BINARY_VERSION = 1;
+
+    private TrajectoryCodec() {
+    }
+
+    /**
+     * 编码为 polyline 字符串，每个点依次为纬度、经度、时间（秒）的差值
+     */
+    public static String encodePolyline(TrajectoryBuffer trajectory) {
+        double factor = Math.pow(10, POLYLINE_PRECISION);
+        StringBuilder sb = new StringBuilder(trajectory.size() * 8);
+        long lastLat = 0;
+        long lastLng = 0;
+        long lastTime = 0;
+        for (int i = 0; i < trajectory.size(); i++) {
+            long lat = Math.round(trajectory.latitude(i) * factor);
+            long lng = Math.round(trajectory.longitude(i) * factor);
+            long time = Math.floorDiv(trajectory.time(i), 1000);
+            appendPolylineValue(sb, lat - lastLat);
+            appendPolylineValue(sb, lng - lastLng);
+            appendPolylineValue(sb, time - lastTime);
+            lastLat = lat;
+            lastLng = lng;
+            lastTime = time;
+        }
+        return sb.toString();
+    }
+
+    public static TrajectoryBuffer decodePolyline(String encoded) {
+        double factor = Math.pow(10, POLYLINE_PRECISION);
+        TrajectoryBuffer trajectory = new TrajectoryBuffer();
+        int[] pos = {0};
+        long lat = 0;
+        long lng = 0;
+        long time = 0;
+        while (pos[0] < encoded.length()) {
+            lat += readPolylineValue(encoded, pos);
+            lng += readPolylineValue(encoded, pos);
+            time += readPolylineValue(encoded, pos);
+            trajectory.add(lat / factor, lng / factor, Double.NaN, time * 1000);
+        }
+        return trajectory;
+    }
+
+    /**
+     * 编码为二进制帧
+     */
+    public static byte[] encodeBinary(TrajectoryBuffer trajectory) {
+        double factor = Math.pow(10, BINARY_PRECISION);
+        ByteSink sink = new ByteSink(16 + trajectory.size() * 8);
+        sink.write(BINARY_VERSION);
+        sink.writeVarint(trajectory.size());
+        long lastLat = 0;
+        long lastLng = 0;
+        long lastTime = 0;
+        for (int i = 0; i < trajectory.size(); i++) {
+            long lat = Math.round(trajectory.latitude(i) * factor);
+            long lng = Math.round(trajectory.longitude(i) * factor);
+            long time = Math.floorDiv(trajectory.time(i), 1000);
+            sink.writeVarint(zigzag(lat - lastLat));
+            sink.writeVarint(zigzag(lng - lastLng));
+            sink.writeVarint(zigzag(time - lastTime));
+            double accuracy = trajectory.accuracy(i);
+            sink.writeVarint(Double.isNaN(accuracy) ? 0 : Math.max(0, Math.round(accuracy)) + 1);
+            lastLat = lat;
+            lastLng = lng;
+            lastTime = time;
+        }
+        return sink.toByteArray();
+    }
+
+    public static TrajectoryBuffer decodeBinary(byte[] frame) {
+        double factor = Math.pow(10, BINARY_PRECISION);
+        int[] pos = {0};
+        int version = frame[pos[0]++];
+        if (version != BINARY_VERSION) {
+            throw new IllegalArgumentException("不支持的轨迹帧版本: " + version);
+        }
+        int count = (int) readVarint(frame, pos);
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(count);
+        long lat = 0;
+        long lng = 0;
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            lat += unzigzag(readVarint(frame, pos));
+            lng += unzigzag(readVarint(frame, pos));
+            time += unzigzag(readVarint(frame, pos));
+            long accuracy = readVarint(frame, pos);
+            trajectory.add(lat / factor, lng / factor, accuracy == 0 ? Double.NaN : accuracy - 1, time * 1000);
+        }
+        return trajectory;
+    }
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * polyline 值：zigzag 后按 5 位一组从低到高输出，除最后一组外都带 0x20 续位，再加 63 成为可见字符
+     */
+    private static void appendPolylineValue(StringBuilder sb, long value) {
+        long v = zigzag(value);
+        while (v >= 0x20) {
+            sb.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>>= 5;
+        }
+        sb.append((char) (v + 63));
+    }
+
+    private static long readPolylineValue(String encoded, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return unzigzag(result);
+    }
+
+    /**
+     * 从 pos[0] 处读取一个变长整数，并把 pos[0] 移到其后
+     */
+    public static long readVarint(byte[] frame, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = frame[pos[0]++];
+            result |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return result;
+    }
+
+    /**
+     * 不加锁的可增长字节数组
+     */
+    public static class ByteSink {
+        private byte[] bytes;
+        private int size;
+
+        public ByteSink(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        public void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size + (size >> 1) + 16);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        public void writeVarint(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
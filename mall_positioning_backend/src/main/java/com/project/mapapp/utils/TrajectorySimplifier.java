@@ -0,0 +1,117 @@
+package com.project.mapapp.utils;
+
+import java.util.Arrays;
+
+/**
+ * 轨迹抽稀（Douglas-Peucker）
+ * 在以首点纬度为基准的局部平面坐标（米）上计算点到线段的距离，用显式栈代替递归，
+ * 除了保留标记和栈之外不分配额外内存
+ *
+ */
+public class TrajectorySimplifier {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    /**
+     * Web 墨卡托 0 级时赤道处每像素对应的米数
+     */
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392;
+
+    public static final int MIN_ZOOM = 0;
+    public static final int MAX_ZOOM = 22;
+
+    private TrajectorySimplifier() {
+    }
+
+    /**
+     * 地图缩放级别下一个像素对应的地面距离（米），作为该级别的抽稀容差
+     */
+    public static double toleranceForZoom(int zoom, double latitude) {
+        int z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        return METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / (1L << z);
+    }
+
+    /**
+     * 抽稀轨迹，首尾点始终保留
+     *
+     * @param latitudes       纬度
+     * @param longitudes      经度
+     * @param size            有效点数
+     * @param toleranceMeters 偏离容差（米），偏离小于该值的中间点被丢弃
+     * @return 保留点的下标，升序
+     */
+    public static int[] simplify(double[] latitudes, double[] longitudes, int size, double toleranceMeters) {
+        if (size <= 2 || toleranceMeters <= 0) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        double ky = Math.toRadians(1) * EARTH_RADIUS_METERS;
+        double kx = ky * Math.cos(Math.toRadians(latitudes[0]));
+        double toleranceSq = toleranceMeters * toleranceMeters;
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        int kept = 2;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double ax = longitudes[first] * kx;
+            double ay = latitudes[first] * ky;
+            double dx = longitudes[last] * kx - ax;
+            double dy = latitudes[last] * ky - ay;
+            double lenSq = dx * dx + dy * dy;
+
+            double maxSq = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double px = longitudes[i] * kx - ax;
+                double py = latitudes[i] * ky - ay;
+                double distSq;
+                if (lenSq == 0) {
+                    distSq = px * px + py * py;
+                } else {
+                    // 投影落在线段外时取到端点的距离
+                    double t = Math.max(0, Math.min(1, (px * dx + py * dy) / lenSq));
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    distSq = ex * ex + ey * ey;
+                }
+                if (distSq > maxSq) {
+                    maxSq = distSq;
+                    index = i;
+                }
+            }
+
+            if (index >= 0 && maxSq > toleranceSq) {
+                keep[index] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+
+        int[] result = new int[kept];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                result[n++] = i;
+            }
+        }
+        return result;
+    }
+}
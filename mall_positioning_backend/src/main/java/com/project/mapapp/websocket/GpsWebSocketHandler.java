@@ -1,6 +1,14 @@
 package com.project.mapapp.websocket;
 
+import com.project.mapapp.constant.UserConstant;
+import com.project.mapapp.manager.DevicePresenceTracker;
+import com.project.mapapp.manager.DeviceRoutingTable;
+import com.project.mapapp.manager.LocationReplayFilter;
+import com.project.mapapp.manager.LocationReportCoalescer;
 import com.project.mapapp.manager.WebSocketSessionManager;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
+import com.project.mapapp.model.entity.User;
+import com.project.mapapp.service.LocationDataService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -10,7 +18,10 @@ import org.springframework.web.socket.handler.TextWebSocketHandler;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
@@ -20,13 +31,36 @@ import java.util.concurrent.*;
 public class GpsWebSocketHandler extends TextWebSocketHandler {
     private static final long HEARTBEAT_INTERVAL = 30; // 秒 (与前端对齐)
     private static final long HEARTBEAT_TIMEOUT = 40;  // 秒
+    /**
+     * 设备上行模式：连接参数 mode=device
+     */
+    private static final String MODE_DEVICE = "device";
+    /**
+     * 设备上行连接经登录用户校验后的设备ID，存放在会话属性中
+     */
+    private static final String UPLINK_DEVICE_ATTRIBUTE = "uplinkDeviceId";
 
     private final WebSocketSessionManager sessionManager;
+    private final LocationDataService locationDataService;
+    private final DeviceRoutingTable deviceRoutingTable;
+    private final LocationReportCoalescer locationReportCoalescer;
+    private final LocationReplayFilter locationReplayFilter;
+    private final DevicePresenceTracker devicePresenceTracker;
     private final ScheduledExecutorService heartbeatExecutor;
 
     @Autowired
-    public GpsWebSocketHandler(WebSocketSessionManager sessionManager) {
+    public GpsWebSocketHandler(WebSocketSessionManager sessionManager,
+                               LocationDataService locationDataService,
+                               DeviceRoutingTable deviceRoutingTable,
+                               LocationReportCoalescer locationReportCoalescer,
+                               LocationReplayFilter locationReplayFilter,
+                               DevicePresenceTracker devicePresenceTracker) {
         this.sessionManager = sessionManager;
+        this.locationDataService = locationDataService;
+        this.deviceRoutingTable = deviceRoutingTable;
+        this.locationReportCoalescer = locationReportCoalescer;
+        this.locationReplayFilter = locationReplayFilter;
+        this.devicePresenceTracker = devicePresenceTracker;
         this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "websocket-heartbeat");
             t.setDaemon(true);
@@ -36,6 +70,20 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        if (isDeviceUplink(session)) {
+            String deviceId = resolveUplinkDevice(session);
+            if (deviceId == null) {
+                session.close(CloseStatus.POLICY_VIOLATION);
+                return;
+            }
+            session.getAttributes().put(UPLINK_DEVICE_ATTRIBUTE, deviceId);
+            // 设备持续上报位置即可保活，不启用服务端心跳
+            log.info("设备上行连接建立 - deviceId: {}", deviceId);
+            sessionManager.addDeviceSession(deviceId, session);
+            devicePresenceTracker.touch(deviceId);
+            return;
+        }
+
         Long wardId = getWardId(session);
         String deviceId = getDeviceId(session);
 
@@ -53,15 +101,128 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
         String payload = message.getPayload();
+        String uplinkDeviceId = getUplinkDeviceId(session);
+        if (uplinkDeviceId != null) {
+            devicePresenceTracker.touch(uplinkDeviceId);
+        }
         if ("heartbeat".equals(payload)) {
             log.debug("收到心跳响应 - sessionId: {}", session.getId());
             return;
         }
+        if (isDeviceUplink(session)) {
+            // 未通过校验的上行连接已关闭，不处理残留的帧
+            if (uplinkDeviceId != null) {
+                handleUplinkFrame(session, uplinkDeviceId, payload);
+            }
+            return;
+        }
         log.debug("收到消息: {}", payload);
     }
 
+    /**
+     * 处理设备上行的位置帧，处理完成后回执 ACK,序号，失败回执 NACK,序号,原因
+     */
+    private void handleUplinkFrame(WebSocketSession session, String deviceId, String payload) {
+        List<LocationReportDTO> fixes;
+        try {
+            fixes = parseLocationFrame(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("位置帧格式错误 - deviceId: {}, 帧: {}", deviceId, payload);
+            sendText(session, "NACK,-," + e.getMessage());
+            return;
+        }
+
+        Long lastSeq = fixes.get(fixes.size() - 1).getSeq();
+        List<LocationReportDTO> accepted = null;
+        try {
+            Long guardianId = deviceRoutingTable.getPrimaryGuardianId(deviceId);
+            if (guardianId == null) {
+                sendText(session, "NACK," + lastSeq + ",设备未绑定监护人");
+                return;
+            }
+            // 回执丢失导致的重传同样回执 ACK，但不再处理
+            accepted = locationReplayFilter.filter(deviceId, fixes);
+            if (accepted.isEmpty()) {
+                sendText(session, "ACK," + lastSeq);
+                return;
+            }
+            if (accepted.size() == 1) {
+                LocationReportDTO fix = accepted.get(0);
+                fix.setDeviceId(deviceId);
+                fix.setGuardianId(guardianId);
+                // 超出速率的单点上报已合并，同样回执 ACK
+                if (locationReportCoalescer.admit(fix) && !locationDataService.ingestLocation(fix)) {
+                    locationReplayFilter.forget(deviceId, accepted);
+                    sendText(session, "NACK," + lastSeq + ",处理失败");
+                    return;
+                }
+            } else {
+                locationDataService.ingestLocationBatch(deviceId, guardianId, accepted);
+            }
+            sendText(session, "ACK," + lastSeq);
+        } catch (Exception e) {
+            log.error("处理设备上行位置失败 - deviceId: {}, seq: {}", deviceId, lastSeq, e);
+            // 撤销去重标记，设备重传这一帧时重新处理
+            if (accepted != null) {
+                locationReplayFilter.forget(deviceId, accepted);
+            }
+            sendText(session, "NACK," + lastSeq + ",处理失败");
+        }
+    }
+
+    /**
+     * 上行帧格式：L,序号,纬度,经度[,精度[,定位时间毫秒]]，多条用 ; 分隔
+     */
+    private List<LocationReportDTO> parseLocationFrame(String payload) {
+        String[] records = payload.split(";");
+        List<LocationReportDTO> fixes = new ArrayList<>(records.length);
+        for (String record : records) {
+            String[] fields = record.trim().split(",");
+            if (fields.length < 4 || !"L".equals(fields[0])) {
+                throw new IllegalArgumentException("帧格式错误");
+            }
+            try {
+                LocationReportDTO fix = new LocationReportDTO();
+                fix.setSeq(Long.parseLong(fields[1]));
+                fix.setLatitude(Double.parseDouble(fields[2]));
+                fix.setLongitude(Double.parseDouble(fields[3]));
+                if (fields.length > 4 && !fields[4].isEmpty()) {
+                    fix.setAccuracy(Double.parseDouble(fields[4]));
+                }
+                if (fields.length > 5 && !fields[5].isEmpty()) {
+                    fix.setCreateTime(new Date(Long.parseLong(fields[5])));
+                }
+                if (Math.abs(fix.getLatitude()) > 90 || Math.abs(fix.getLongitude()) > 180) {
+                    throw new IllegalArgumentException("坐标超出范围");
+                }
+                fixes.add(fix);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("数值格式错误");
+            }
+        }
+        return fixes;
+    }
+
+    private void sendText(WebSocketSession session, String text) {
+        try {
+            synchronized (session) {
+                if (session.isOpen()) {
+                    session.sendMessage(new TextMessage(text));
+                }
+            }
+        } catch (IOException e) {
+            log.debug("发送回执失败 - sessionId: {}", session.getId(), e);
+        }
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        if (isDeviceUplink(session)) {
+            log.info("设备上行连接关闭 - deviceId: {}, 状态: {}", getUplinkDeviceId(session), status);
+            sessionManager.removeDeviceSession(getUplinkDeviceId(session), session);
+            return;
+        }
+
         Long wardId = getWardId(session);
         String deviceId = getDeviceId(session);
 
@@ -80,7 +241,9 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         log.error("传输错误 - wardId: {}, deviceId: {}, 错误: {}",
                 wardId, deviceId, exception.getMessage());
 
-        if (wardId != null && deviceId != null) {
+        if (isDeviceUplink(session)) {
+            sessionManager.removeDeviceSession(getUplinkDeviceId(session), session);
+        } else if (wardId != null && deviceId != null) {
             sessionManager.removeSession(wardId, deviceId);
         }
 
@@ -164,6 +327,42 @@ public class GpsWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
+    /**
+     * 设备上行只能以登录用户（被监护人）绑定的设备身份上报，不信任连接参数中的 deviceId；
+     * 连接参数带了 deviceId 时必须与绑定的设备一致
+     *
+     * @return 校验通过的设备ID，未登录、未绑定设备或不一致时返回 null
+     */
+    private String resolveUplinkDevice(WebSocketSession session) {
+        Object userObj = session.getAttributes().get(UserConstant.USER_LOGIN_STATE);
+        if (!(userObj instanceof User) || ((User) userObj).getId() == null) {
+            log.warn("设备上行连接未登录 - sessionId: {}", session.getId());
+            return null;
+        }
+        Long userId = ((User) userObj).getId();
+        String deviceId = deviceRoutingTable.getDeviceId(userId);
+        String requested = getDeviceId(session);
+        if (deviceId == null || (requested != null && !requested.equals(deviceId))) {
+            log.warn("设备上行连接的设备与登录用户不匹配 - userId: {}, 绑定设备: {}, 请求设备: {}",
+                    userId, deviceId, requested);
+            return null;
+        }
+        return deviceId;
+    }
+
+    private String getUplinkDeviceId(WebSocketSession session) {
+        return (String) session.getAttributes().get(UPLINK_DEVICE_ATTRIBUTE);
+    }
+
+    private boolean isDeviceUplink(WebSocketSession session) {
+        URI uri = session.getUri();
+        if (uri == null || uri.getQuery() == null) {
+            return false;
+        }
+        return Arrays.stream(uri.getQuery().split("&"))
+                .anyMatch(param -> param.equals("mode=" + MODE_DEVICE));
+    }
+
     @PreDestroy
     public void destroy() {
         try {
@@ -1,6 +1,7 @@
 package com.project.mapapp;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.manager.DeviceRoutingTable;
 import com.project.mapapp.manager.WebSocketSessionManager;
 import com.project.mapapp.model.dto.location.LocationReportDTO;
 import com.project.mapapp.model.dto.location.LocationResponseDTO;
@@ -13,7 +14,9 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.test.web.servlet.MockMvc;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -35,18 +38,25 @@ public class LocationWebSocketFlowTest {
     @MockBean
     private WebSocketSessionManager sessionManager;
 
+    @MockBean
+    private DeviceRoutingTable deviceRoutingTable;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Test
     public void testLocationReportTriggersWebSocketNotification() throws Exception {
-        // 1. 准备测试数据
+        // 1. 准备测试数据：被监护人 7 绑定设备 test-device-001，设备有两个已通过申请的监护人
+        Set<Long> guardianIds = new HashSet<>(Arrays.asList(5L, 6L));
+        when(deviceRoutingTable.getDeviceId(7L)).thenReturn("test-device-001");
+        when(deviceRoutingTable.getPrimaryGuardianId("test-device-001")).thenReturn(5L);
+        when(deviceRoutingTable.getGuardianIds("test-device-001")).thenReturn(guardianIds);
+
         LocationReportDTO reportDTO = new LocationReportDTO();
-        reportDTO.setDeviceId("test-device-001");
-        reportDTO.setLatitude(new BigDecimal("39.907295"));
-        reportDTO.setLongitude(new BigDecimal("116.391311"));
-        reportDTO.setAccuracy(new BigDecimal("15.3"));
-        reportDTO.setGuardianId(5L);
+        reportDTO.setWardId(7L);
+        reportDTO.setLatitude(39.907295);
+        reportDTO.setLongitude(116.391311);
+        reportDTO.setAccuracy(15.3);
 
         // 2. 调用位置上报接口
         mockMvc.perform(post("/api/location/report")
@@ -55,8 +65,8 @@ public class LocationWebSocketFlowTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true));
 
-        // 3. 验证WebSocket通知被调用
+        // 3. 验证WebSocket通知推送给设备的所有监护人
         verify(webSocketService, times(1))
-                .notifyGuardian(eq(5L), any(LocationResponseDTO.class));
+                .notifyGuardians(eq(guardianIds), any(LocationResponseDTO.class));
     }
 }
\ No newline at end of file
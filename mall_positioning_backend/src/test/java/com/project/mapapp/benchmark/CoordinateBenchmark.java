@@ -0,0 +1,154 @@
+package com.project.mapapp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.dto.location.LocationReportDTO;
+import com.project.mapapp.model.dto.location.LocationResponseDTO;
+import com.project.mapapp.model.entity.LocationData;
+import lombok.Data;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上报链路坐标表示的对比：BigDecimal（改造前）与基本类型（LocationPoint）
+ * bigDecimal/primitive 走完一次上报的坐标相关部分：解析请求 JSON、构造落库对象、围栏判断、序列化推送消息；
+ * *Internal 从已解析的请求开始，只比较链路内部（构造落库对象和围栏判断），不含 JSON 边界
+ * 运行 main 方法（带 GC 分析器，gc.alloc.rate.norm 为每次上报分配的字节数），不随单元测试执行
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoordinateBenchmark {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private String payload;
+    private Polygon fence;
+    private LegacyReportDTO legacyReport;
+    private LocationReportDTO report;
+
+    @Setup
+    public void setup() {
+        payload = "{\"wardId\":7,\"latitude\":31.2304567,\"longitude\":121.4737012,\"accuracy\":12.5}";
+        fence = geometryFactory.createPolygon(new Coordinate[]{
+                new Coordinate(121.46, 31.22), new Coordinate(121.48, 31.22),
+                new Coordinate(121.48, 31.24), new Coordinate(121.46, 31.24),
+                new Coordinate(121.46, 31.22)});
+        try {
+            legacyReport = objectMapper.readValue(payload, LegacyReportDTO.class);
+            report = objectMapper.readValue(payload, LocationReportDTO.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 改造前：DTO 和实体都用 BigDecimal，围栏判断前 doubleValue() 转回
+     */
+    @Benchmark
+    public String bigDecimal() throws IOException {
+        LegacyReportDTO report = objectMapper.readValue(payload, LegacyReportDTO.class);
+        LocationData location = new LocationData();
+        location.setDevice_id("device-001");
+        location.setLatitude(report.getLatitude());
+        location.setLongitude(report.getLongitude());
+        location.setAccuracy(report.getAccuracy());
+        location.setCreate_time(LocalDateTime.now());
+
+        LegacyResponseDTO response = new LegacyResponseDTO();
+        response.setDeviceId(location.getDevice_id());
+        response.setLatitude(location.getLatitude());
+        response.setLongitude(location.getLongitude());
+        response.setAccuracy(location.getAccuracy());
+        response.setCreateTime(location.getCreate_time().format(TIME_FORMATTER));
+
+        boolean inside = fence.contains(geometryFactory.createPoint(new Coordinate(
+                response.getLongitude().doubleValue(), response.getLatitude().doubleValue())));
+        return inside ? objectMapper.writeValueAsString(response) : null;
+    }
+
+    /**
+     * 改造后：解析为 Double，链路内部用 LocationPoint 的基本类型字段
+     */
+    @Benchmark
+    public String primitive() throws IOException {
+        LocationReportDTO report = objectMapper.readValue(payload, LocationReportDTO.class);
+        LocationPoint point = LocationPoint.of("device-001", 5L, report, System.currentTimeMillis());
+
+        boolean inside = fence.contains(geometryFactory.createPoint(
+                new Coordinate(point.getLongitude(), point.getLatitude())));
+        return inside ? objectMapper.writeValueAsString(LocationResponseDTO.from(point)) : null;
+    }
+
+    @Benchmark
+    public boolean bigDecimalInternal() {
+        LocationData location = new LocationData();
+        location.setDevice_id("device-001");
+        location.setLatitude(legacyReport.getLatitude());
+        location.setLongitude(legacyReport.getLongitude());
+        location.setAccuracy(legacyReport.getAccuracy());
+        return fence.contains(geometryFactory.createPoint(new Coordinate(
+                location.getLongitude().doubleValue(), location.getLatitude().doubleValue())));
+    }
+
+    @Benchmark
+    public boolean primitiveInternal() {
+        LocationPoint point = LocationPoint.of("device-001", 5L, report, System.currentTimeMillis());
+        return fence.contains(geometryFactory.createPoint(
+                new Coordinate(point.getLongitude(), point.getLatitude())));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CoordinateBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    @Data
+    public static class LegacyReportDTO {
+        private Long wardId;
+        private BigDecimal latitude;
+        private BigDecimal longitude;
+        private BigDecimal accuracy;
+    }
+
+    @Data
+    public static class LegacyResponseDTO {
+        private BigDecimal latitude;
+        private BigDecimal longitude;
+        private BigDecimal accuracy;
+        private String createTime;
+        private String deviceId;
+    }
+}
@@ -0,0 +1,88 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.model.entity.LocationData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LocationArchiveBlockTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 3, 25, 8, 0);
+
+    private static LocationData location(Long id, String latitude, String longitude, String accuracy,
+                                         Long timestampOffsetMs, Long guardianId, int second) {
+        LocationData location = new LocationData();
+        location.setId(id);
+        location.setLatitude(new BigDecimal(latitude));
+        location.setLongitude(new BigDecimal(longitude));
+        location.setAccuracy(accuracy == null ? null : new BigDecimal(accuracy));
+        location.setGuardian_id(guardianId);
+        location.setCreate_time(BASE.plusSeconds(second));
+        if (timestampOffsetMs != null) {
+            long createTime = BASE.plusSeconds(second).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            location.setTimestamp(new Date(createTime + timestampOffsetMs));
+        }
+        return location;
+    }
+
+    @Test
+    public void testRoundTripWithNullsAndNegativeDeltas() throws Exception {
+        List<LocationData> input = new ArrayList<>();
+        input.add(location(100L, "31.2304160", "121.4737010", "8.50", -300L, 7L, 0));
+        // ID、坐标、监护人相对前一个点减小，定位时间晚于记录时间
+        input.add(location(42L, "-33.8688197", "-151.2092955", null, 1500L, 3L, 1));
+        // 各可空字段都为空
+        input.add(location(null, "0.0000000", "0.0000000", null, null, null, 1));
+        input.add(location(43L, "31.2304161", "121.4737009", "0.00", 0L, 7L, 5));
+
+        LocationArchive.Block block = new LocationArchive.Block();
+        for (LocationData location : input) {
+            block.add(location);
+        }
+        byte[] encoded = block.encode();
+        LocationArchive.Block decoded = LocationArchive.Block.decode(encoded);
+
+        for (int i = 0; i < input.size(); i++) {
+            LocationData expected = input.get(i);
+            LocationData actual = decoded.toLocationData("dev-1", i);
+            assertEquals("dev-1", actual.getDevice_id());
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(0, expected.getLatitude().compareTo(actual.getLatitude()));
+            assertEquals(0, expected.getLongitude().compareTo(actual.getLongitude()));
+            if (expected.getAccuracy() == null) {
+                assertNull(actual.getAccuracy());
+            } else {
+                assertEquals(0, expected.getAccuracy().compareTo(actual.getAccuracy()));
+            }
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getGuardian_id(), actual.getGuardian_id());
+            assertEquals(expected.getCreate_time(), actual.getCreate_time());
+        }
+        assertArrayEquals(encoded, decoded.encode());
+    }
+
+    @Test
+    public void testUnknownVersionIsRejected() throws Exception {
+        LocationArchive.Block block = new LocationArchive.Block();
+        block.add(location(1L, "31.2304160", "121.4737010", null, null, null, 0));
+        byte[] raw = LocationArchive.Block.inflate(block.encode());
+        raw[0] = 2;
+        byte[] corrupted = LocationArchive.Block.deflate(raw);
+        assertThrows(DataFormatException.class, () -> LocationArchive.Block.decode(corrupted));
+        // 截断的块同样报错，不会读出半块数据
+        byte[] truncated = Arrays.copyOf(block.encode(), 4);
+        assertThrows(DataFormatException.class, () -> LocationArchive.Block.decode(truncated));
+    }
+}
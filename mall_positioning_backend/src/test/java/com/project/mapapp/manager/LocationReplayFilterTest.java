@@ -0,0 +1,70 @@
+package com.project.mapapp.manager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocationReplayFilterTest {
+
+    private static final long RESET_GAP = 1000;
+
+    @Test
+    public void testOutOfOrderWithinWindow() {
+        LocationReplayFilter.SeqWindow window = new LocationReplayFilter.SeqWindow(64);
+        assertTrue(window.mark(10, RESET_GAP));
+        assertTrue(window.mark(8, RESET_GAP));
+        assertFalse(window.mark(8, RESET_GAP));
+        assertFalse(window.mark(10, RESET_GAP));
+        assertTrue(window.mark(9, RESET_GAP));
+        assertTrue(window.mark(12, RESET_GAP));
+        assertTrue(window.mark(11, RESET_GAP));
+        assertFalse(window.mark(11, RESET_GAP));
+    }
+
+    @Test
+    public void testWindowWrap() {
+        LocationReplayFilter.SeqWindow window = new LocationReplayFilter.SeqWindow(64);
+        for (long seq = 0; seq < 64; seq++) {
+            assertTrue(window.mark(seq, RESET_GAP));
+        }
+        // 64 与 0 共用一位，前进高水位时要清掉旧位
+        assertTrue(window.mark(64, RESET_GAP));
+        assertTrue(window.mark(65, RESET_GAP));
+        // 落到窗口之外的旧序号按重复处理
+        assertFalse(window.mark(0, RESET_GAP));
+        assertFalse(window.mark(1, RESET_GAP));
+        assertFalse(window.mark(63, RESET_GAP));
+
+        // 跳过整个窗口后旧位全部清空
+        assertTrue(window.mark(500, RESET_GAP));
+        assertTrue(window.mark(499, RESET_GAP));
+        assertTrue(window.mark(564, RESET_GAP));
+        assertFalse(window.mark(500, RESET_GAP));
+    }
+
+    @Test
+    public void testResetGapRestartsSequence() {
+        LocationReplayFilter.SeqWindow window = new LocationReplayFilter.SeqWindow(64);
+        assertTrue(window.mark(5000, RESET_GAP));
+        assertFalse(window.mark(4500, RESET_GAP));
+        // 序号回退超过 resetGap 视为设备重启重新计数
+        assertTrue(window.mark(3, RESET_GAP));
+        assertTrue(window.mark(4, RESET_GAP));
+        assertFalse(window.mark(3, RESET_GAP));
+    }
+
+    @Test
+    public void testUnmarkAllowsRetry() {
+        LocationReplayFilter.SeqWindow window = new LocationReplayFilter.SeqWindow(64);
+        assertTrue(window.mark(10, RESET_GAP));
+        assertTrue(window.mark(11, RESET_GAP));
+        window.unmark(10);
+        assertTrue(window.mark(10, RESET_GAP));
+        assertFalse(window.mark(11, RESET_GAP));
+        // 窗口外的序号不受影响
+        assertTrue(window.mark(100, RESET_GAP));
+        window.unmark(10);
+        assertFalse(window.mark(10, RESET_GAP));
+    }
+}
@@ -0,0 +1,105 @@
+package com.project.mapapp.manager;
+
+import com.project.mapapp.config.LocationProperties;
+import com.project.mapapp.model.dto.location.LocationPoint;
+import com.project.mapapp.model.entity.LocationData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MappedTrajectoryStoreTest {
+
+    private static final long BASE = 1742866594000L;
+
+    @TempDir
+    Path dir;
+
+    private MappedTrajectoryStore open() throws Exception {
+        LocationProperties properties = new LocationProperties();
+        properties.getStore().setDir(dir.toString());
+        // 扩容和索引间隔取小值，覆盖多次扩容和索引边界
+        properties.getStore().setGrowRecords(100);
+        properties.getStore().setIndexInterval(16);
+        MappedTrajectoryStore store = new MappedTrajectoryStore(properties);
+        store.init();
+        return store;
+    }
+
+    private static LocationPoint point(String deviceId, int i) {
+        LocationPoint point = new LocationPoint();
+        point.setDeviceId(deviceId);
+        point.setGuardianId(7L);
+        point.setLatitude(31.2304160 + i * 0.0000013);
+        point.setLongitude(121.4737010 - i * 0.0000021);
+        if (i % 3 != 0) {
+            point.setAccuracy(8.5);
+        }
+        point.setTimestamp(BASE + i * 1000L - 200);
+        point.setCreateTime(BASE + i * 1000L);
+        return point;
+    }
+
+    private static LocalDateTime time(int i) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(BASE + i * 1000L), ZoneId.systemDefault());
+    }
+
+    @Test
+    public void testRangeScanAndReopen() throws Exception {
+        MappedTrajectoryStore store = open();
+        for (int from = 0; from < 1000; from += 50) {
+            List<LocationPoint> batch = new ArrayList<>();
+            for (int i = from; i < from + 50; i++) {
+                batch.add(point("dev-1", i));
+                batch.add(point("dev-2", i));
+            }
+            store.append(batch);
+        }
+
+        List<LocationData> rows = new ArrayList<>();
+        store.scan("dev-1", time(300), time(499), rows::add);
+        assertEquals(200, rows.size());
+        assertEquals(time(300), rows.get(0).getCreate_time());
+        assertEquals(301L, rows.get(0).getId());
+        assertEquals(31.2308060, rows.get(0).getLatitude().doubleValue(), 1e-7);
+        assertNull(rows.get(0).getAccuracy());
+        assertEquals(8.5, rows.get(1).getAccuracy().doubleValue(), 1e-9);
+
+        List<LocationData> page = store.page("dev-1", time(300), time(499), time(310), 311L, 5);
+        assertEquals(312L, page.get(0).getId());
+        assertEquals(5, page.size());
+        store.destroy();
+
+        // 重新打开后数据和索引可以从文件恢复
+        MappedTrajectoryStore reopened = open();
+        rows.clear();
+        reopened.scan("dev-2", null, null, rows::add);
+        assertEquals(1000, rows.size());
+        assertEquals(time(999), reopened.latest("dev-1").getCreate_time());
+        assertNull(reopened.latest("dev-3"));
+        reopened.destroy();
+    }
+
+    @Test
+    public void testCreateTimeNeverGoesBack() throws Exception {
+        MappedTrajectoryStore store = open();
+        List<LocationPoint> batch = new ArrayList<>();
+        batch.add(point("dev-1", 10));
+        batch.add(point("dev-1", 5));
+        batch.add(point("dev-1", 20));
+        store.append(batch);
+
+        List<LocationData> rows = new ArrayList<>();
+        store.scan("dev-1", time(10), time(10), rows::add);
+        assertEquals(2, rows.size());
+        store.destroy();
+    }
+}
@@ -0,0 +1,86 @@
+package com.project.mapapp.utils;
+
+import com.project.mapapp.utils.StayPointDetector.StayPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StayPointDetectorTest {
+
+    private static final long MINUTE = 60_000L;
+
+    private static StayPointDetector detector() {
+        return new StayPointDetector(30, 5 * MINUTE, 30 * MINUTE);
+    }
+
+    @Test
+    public void testStayBetweenWalks() {
+        StayPointDetector detector = detector();
+        List<StayPoint> stays = new ArrayList<>();
+        long time = 0;
+        // 向东走，每 10 秒一个点（每步约 38 米）
+        for (int i = 0; i < 6; i++, time += 10_000) {
+            offer(detector, stays, 31.2, 121.4 + i * 0.0004, time);
+        }
+        // 原地停留 10 分钟，约 5 米抖动
+        long stayStart = time;
+        for (int i = 0; i <= 60; i++, time += 10_000) {
+            offer(detector, stays, 31.2 + (i % 2) * 0.00004, 121.403, time);
+        }
+        long stayEnd = time - 10_000;
+        // 离开前就能查到进行中的停留
+        assertNotNull(detector.current());
+        for (int i = 1; i < 6; i++, time += 10_000) {
+            offer(detector, stays, 31.2 + i * 0.0003, 121.403, time);
+        }
+        // 原地停 2 分钟不算停留
+        for (int i = 0; i <= 12; i++, time += 10_000) {
+            offer(detector, stays, 31.202, 121.403, time);
+        }
+        offer(detector, stays, 31.21, 121.403, time);
+
+        assertEquals(1, stays.size());
+        StayPoint stay = stays.get(0);
+        assertEquals(stayStart, stay.getStartTime());
+        assertEquals(stayEnd, stay.getEndTime());
+        assertEquals(61, stay.getCount());
+        assertEquals(31.2, stay.getLatitude(), 0.00004);
+        assertEquals(121.403, stay.getLongitude(), 1e-9);
+        assertNull(detector.finish());
+    }
+
+    @Test
+    public void testLongGapEndsStay() {
+        StayPointDetector detector = detector();
+        List<StayPoint> stays = new ArrayList<>();
+        for (int i = 0; i <= 6; i++) {
+            offer(detector, stays, 31.2, 121.4, i * MINUTE);
+        }
+        // 同一位置但离线 1 小时，之前的停留在 6 分钟处结束
+        offer(detector, stays, 31.2, 121.4, 66 * MINUTE);
+        // 更早的点被忽略
+        offer(detector, stays, 31.3, 121.4, 10 * MINUTE);
+        for (int i = 67; i <= 72; i++) {
+            offer(detector, stays, 31.2, 121.4, i * MINUTE);
+        }
+
+        assertEquals(1, stays.size());
+        assertEquals(6 * MINUTE, stays.get(0).getEndTime());
+        StayPoint last = detector.finish();
+        assertNotNull(last);
+        assertEquals(66 * MINUTE, last.getStartTime());
+        assertEquals(7, last.getCount());
+    }
+
+    private static void offer(StayPointDetector detector, List<StayPoint> stays, double lat, double lng, long time) {
+        StayPoint stay = detector.offer(lat, lng, time);
+        if (stay != null) {
+            stays.add(stay);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.project.mapapp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrajectoryCodecTest {
+
+    private static TrajectoryBuffer sample() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer();
+        long time = 1742866594000L;
+        for (int i = 0; i < 3600; i++) {
+            trajectory.add(31.230416 + i * 0.000013, 121.473701 - i * 0.000021,
+                    i % 10 == 0 ? Double.NaN : 8, time + i * 1000L);
+        }
+        return trajectory;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        TrajectoryBuffer trajectory = sample();
+        byte[] frame = TrajectoryCodec.encodeBinary(trajectory);
+        TrajectoryBuffer decoded = TrajectoryCodec.decodeBinary(frame);
+
+        assertEquals(trajectory.size(), decoded.size());
+        for (int i = 0; i < trajectory.size(); i++) {
+            assertEquals(trajectory.latitude(i), decoded.latitude(i), 1e-6);
+            assertEquals(trajectory.longitude(i), decoded.longitude(i), 1e-6);
+            assertEquals(trajectory.time(i), decoded.time(i));
+            assertEquals(Double.isNaN(trajectory.accuracy(i)), Double.isNaN(decoded.accuracy(i)));
+        }
+        // 匀速轨迹每个点只需几个字节
+        assertTrue(frame.length < trajectory.size() * 8);
+    }
+
+    @Test
+    public void testPolylineRoundTrip() {
+        TrajectoryBuffer trajectory = sample();
+        TrajectoryBuffer decoded = TrajectoryCodec.decodePolyline(TrajectoryCodec.encodePolyline(trajectory));
+
+        assertEquals(trajectory.size(), decoded.size());
+        for (int i = 0; i < trajectory.size(); i++) {
+            assertEquals(trajectory.latitude(i), decoded.latitude(i), 1e-5);
+            assertEquals(trajectory.longitude(i), decoded.longitude(i), 1e-5);
+            assertEquals(trajectory.time(i), decoded.time(i));
+        }
+    }
+}
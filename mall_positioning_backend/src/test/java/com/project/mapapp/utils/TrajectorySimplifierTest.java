@@ -0,0 +1,39 @@
+package com.project.mapapp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TrajectorySimplifierTest {
+
+    @Test
+    public void testStraightLineKeepsOnlyEndpoints() {
+        int size = 1000;
+        double[] lat = new double[size];
+        double[] lng = new double[size];
+        for (int i = 0; i < size; i++) {
+            lat[i] = 31.2;
+            lng[i] = 121.4 + i * 0.00001;
+        }
+        assertArrayEquals(new int[]{0, size - 1}, TrajectorySimplifier.simplify(lat, lng, size, 1));
+    }
+
+    @Test
+    public void testCornerIsKept() {
+        // 向东约 110 米后向北约 110 米
+        double[] lat = {31.2, 31.2, 31.2, 31.2005, 31.201};
+        double[] lng = {121.4, 121.4006, 121.4012, 121.4012, 121.4012};
+        assertArrayEquals(new int[]{0, 2, 4}, TrajectorySimplifier.simplify(lat, lng, lat.length, 5));
+        assertEquals(lat.length, TrajectorySimplifier.simplify(lat, lng, lat.length, 0).length);
+    }
+
+    @Test
+    public void testToleranceShrinksWithZoom() {
+        double coarse = TrajectorySimplifier.toleranceForZoom(10, 31.2);
+        double fine = TrajectorySimplifier.toleranceForZoom(18, 31.2);
+        assertEquals(256, coarse / fine, 1e-9);
+        assertTrue(fine > 0.4 && fine < 0.6);
+    }
+}